@@ -31,6 +31,113 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    sourceSets {
+        getByName("main") {
+            java.srcDir(layout.buildDirectory.dir("generated/source/catalog"))
+        }
+    }
+}
+
+val generateCatalogIndex by tasks.registering {
+    val catalogXml = file("src/main/res/values/strings.xml")
+    val drawableDir = file("src/main/res/drawable")
+    val outputDir = layout.buildDirectory.dir("generated/source/catalog")
+    inputs.file(catalogXml)
+    inputs.dir(drawableDir)
+    outputs.dir(outputDir)
+
+    doLast {
+        val document = javax.xml.parsers.DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(catalogXml)
+        val arrays = mutableMapOf<String, List<String>>()
+        val arrayNodes = document.getElementsByTagName("string-array")
+        for (i in 0 until arrayNodes.length) {
+            val node = arrayNodes.item(i) as org.w3c.dom.Element
+            val itemNodes = node.getElementsByTagName("item")
+            arrays[node.getAttribute("name")] = (0 until itemNodes.length).map {
+                itemNodes.item(it).textContent.trim().replace("\\'", "'").replace("\\\"", "\"")
+            }
+        }
+
+        val imageNames = arrays.getValue("item_images")
+        val descriptions = arrays.getValue("item_descriptions")
+        val prices = arrays.getValue("item_prices")
+        val details = arrays.getValue("item_details")
+        val categories = arrays["item_categories"].orEmpty()
+        val availability = arrays["item_availability"].orEmpty()
+        val minLength = listOf(imageNames.size, descriptions.size, prices.size, details.size).min()
+
+        val drawables = drawableDir.listFiles().orEmpty().map { it.nameWithoutExtension }.toSet()
+        val rows = (0 until minLength).filter { i ->
+            val drawableName = imageNames[i].lowercase()
+            (drawableName in drawables).also { found ->
+                if (!found) logger.warn("Catalog: no drawable named '$drawableName', skipping row $i")
+            }
+        }
+
+        fun quote(value: String) = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+        fun cents(value: String) = java.math.BigDecimal(value.replace(Regex("[^\\d.]"), ""))
+            .movePointRight(2).intValueExact()
+
+        val contentHash = java.util.zip.CRC32().apply {
+            rows.forEach { i ->
+                val row = listOf(imageNames[i], descriptions[i], prices[i], details[i], categories.getOrElse(i) { "" }, availability.getOrElse(i) { "" })
+                update(row.joinToString("\u0000", postfix = "\n").toByteArray(Charsets.UTF_8))
+            }
+        }.value
+
+        val source = buildString {
+            appendLine("package com.example.fruitshop;")
+            appendLine()
+            appendLine("// Generated by :app:generateCatalogIndex from res/values/strings.xml. Do not edit.")
+            appendLine("final class CatalogIndex {")
+            appendLine()
+            appendLine("    static final int SIZE = ${rows.size};")
+            appendLine()
+            appendLine("    static final long CONTENT_HASH = ${contentHash}L;")
+            appendLine()
+            appendLine("    static final String[] ITEM_IDS = {")
+            rows.forEach { appendLine("            ${quote(imageNames[it].lowercase().replace(Regex("\\s+"), "_"))},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final int[] IMAGE_IDS = {")
+            rows.forEach { appendLine("            R.drawable.${imageNames[it].lowercase()},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final int[] PRICE_CENTS = {")
+            rows.forEach { appendLine("            ${cents(prices[it])},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final String[] DESCRIPTIONS = {")
+            rows.forEach { appendLine("            ${quote(descriptions[it])},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final String[] DETAILS = {")
+            rows.forEach { appendLine("            ${quote(details[it])},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final String[] CATEGORIES = {")
+            rows.forEach { appendLine("            ${quote(categories.getOrElse(it) { "other" })},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    static final boolean[] AVAILABLE = {")
+            rows.forEach { appendLine("            ${availability.getOrElse(it) { "in_stock" } == "in_stock"},") }
+            appendLine("    };")
+            appendLine()
+            appendLine("    private CatalogIndex() {")
+            appendLine("    }")
+            appendLine("}")
+        }
+
+        val outFile = outputDir.get().file("com/example/fruitshop/CatalogIndex.java").asFile
+        outFile.parentFile.mkdirs()
+        outFile.writeText(source)
+    }
+}
+
+tasks.named("preBuild") {
+    dependsOn(generateCatalogIndex)
 }
 
 dependencies {
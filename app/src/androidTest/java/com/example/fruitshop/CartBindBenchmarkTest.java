@@ -0,0 +1,93 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.FrameLayout;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the cached drawable resolver, which CartAdapter uses on every bind in place of a
+ * getIdentifier lookup, agrees with getIdentifier and is faster, and that rows bind with it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartBindBenchmarkTest {
+
+    private static final String TAG = "CartBindBenchmark";
+    private static final int RUNS = 2000;
+
+    private static final CartAdapter.OnCartItemInteractionListener NO_OP_LISTENER = new CartAdapter.OnCartItemInteractionListener() {
+        @Override
+        public void onChangeQuantityClicked(CartItem item, int position) {
+        }
+
+        @Override
+        public void onDeleteItemClicked(CartItem item, int position) {
+        }
+
+        @Override
+        public void onSelectionChanged(int selectedCount) {
+        }
+    };
+
+    @Test
+    public void drawableResolver_matchesGetIdentifierAndIsFaster() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        DrawableResolver resolver = DrawableResolver.getInstance(context);
+
+        for (int i = 0; i < CatalogIndex.SIZE; i++) {
+            String itemId = CatalogIndex.ITEM_IDS[i];
+            assertEquals(context.getResources().getIdentifier(itemId, "drawable", context.getPackageName()), resolver.resolve(itemId));
+        }
+        assertEquals(R.drawable.default_image_placeholder, resolver.resolve("not_in_catalog"));
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            String itemId = CatalogIndex.ITEM_IDS[i % CatalogIndex.SIZE];
+            context.getResources().getIdentifier(itemId, "drawable", context.getPackageName());
+        }
+        long getIdentifierNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            resolver.resolve(CatalogIndex.ITEM_IDS[i % CatalogIndex.SIZE]);
+        }
+        long resolverNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        Log.i(TAG, "getIdentifier: " + getIdentifierNanos + " ns/lookup, resolver: " + resolverNanos + " ns/lookup");
+        assertTrue("resolver " + resolverNanos + " ns, getIdentifier " + getIdentifierNanos + " ns", resolverNanos < getIdentifierNanos);
+    }
+
+    @Test
+    public void cartAdapter_bindsEveryRow() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            CartAdapter adapter = new CartAdapter(context, NO_OP_LISTENER);
+            List<CartItem> cartItems = new ArrayList<>();
+            for (int i = 0; i < CatalogIndex.SIZE; i++) {
+                CartItem cartItem = new CartItem(CatalogIndex.ITEM_IDS[i], CatalogIndex.DESCRIPTIONS[i], Money.ofCents(CatalogIndex.PRICE_CENTS[i]), 1);
+                cartItems.add(cartItem);
+            }
+            adapter.updateCartItems(cartItems);
+            assertEquals(cartItems.size(), adapter.getItemCount());
+
+            CartAdapter.CartViewHolder holder = adapter.onCreateViewHolder(new FrameLayout(context), 0);
+            for (int i = 0; i < cartItems.size(); i++) {
+                adapter.onBindViewHolder(holder, i);
+                assertEquals(cartItems.get(i).getItemName(), holder.descriptionTextView.getText().toString());
+                assertEquals(cartItems.get(i).getFormattedPrice(), holder.priceTextView.getText().toString());
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fills and then clears carts of 1, 500 and 5,000 lines through the outbox, CartSyncer and
+ * FirestoreCartBackend against the Firestore emulator, checking the lines and the summary document.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartBulkSyncTest {
+
+    private static final String TAG = "CartBulkSync";
+
+    private static FirebaseFirestore db;
+
+    @BeforeClass
+    public static void useEmulator() {
+        db = FirebaseFirestore.getInstance();
+        db.useEmulator("10.0.2.2", 8080);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder().setPersistenceEnabled(false).build());
+    }
+
+    @Test
+    public void singleLine() throws Exception {
+        fillAndClear(1);
+    }
+
+    @Test
+    public void fiveHundredLines() throws Exception {
+        fillAndClear(500);
+    }
+
+    @Test
+    public void fiveThousandLines() throws Exception {
+        fillAndClear(5_000);
+    }
+
+    @Test
+    public void replayedBatch_isNotCountedTwice() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String userId = "replay-" + System.nanoTime();
+        CartOutbox outbox = new SqliteCartOutbox(new CartDatabaseHelper(context, null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CartWriter cartWriter = new CartWriter(db);
+        List<CartOperation> upserts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            upserts.add(CartOperation.upsert(userId, "item-" + i, "item-" + i, 100, 2, null, 1_000L));
+        }
+
+        drain(outbox, executor, upserts);
+        // As if the first commit landed but its response was lost.
+        drain(outbox, executor, upserts);
+
+        CartSummary summary = CartSummary.decode(Tasks.await(cartWriter.cartRef(userId).get()));
+        assertEquals(3, summary.getLineCount());
+        assertEquals(6, summary.getUnitCount());
+        assertEquals(600, summary.getSubtotalCents());
+        executor.shutdown();
+    }
+
+    private void fillAndClear(int lineCount) throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String userId = "bulk-" + lineCount + "-" + System.nanoTime();
+        CartOutbox outbox = new SqliteCartOutbox(new CartDatabaseHelper(context, null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CartWriter cartWriter = new CartWriter(db);
+
+        List<CartOperation> upserts = new ArrayList<>(lineCount);
+        List<CartOperation> deletes = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            String itemId = "item-" + i;
+            upserts.add(CartOperation.upsert(userId, itemId, itemId, 100 + i, 2, null, 1_000L + i));
+            deletes.add(CartOperation.delete(userId, itemId).withBase(2, 100 + i));
+        }
+        long expectedSubtotal = 0;
+        for (int i = 0; i < lineCount; i++) {
+            expectedSubtotal += 2L * (100 + i);
+        }
+
+        long fillMillis = drain(outbox, executor, upserts);
+        assertEquals(lineCount, itemCount(cartWriter.cartRef(userId)));
+        CartSummary summary = CartSummary.decode(Tasks.await(cartWriter.cartRef(userId).get()));
+        assertEquals(lineCount, summary.getLineCount());
+        assertEquals(2L * lineCount, summary.getUnitCount());
+        assertEquals(expectedSubtotal, summary.getSubtotalCents());
+
+        long clearMillis = drain(outbox, executor, deletes);
+        assertEquals(0, itemCount(cartWriter.cartRef(userId)));
+        summary = CartSummary.decode(Tasks.await(cartWriter.cartRef(userId).get()));
+        assertEquals(0, summary.getLineCount());
+        assertEquals(0, summary.getUnitCount());
+        assertEquals(0, summary.getSubtotalCents());
+
+        executor.shutdown();
+        Log.i(TAG, lineCount + " lines: fill " + fillMillis + " ms, clear " + clearMillis + " ms");
+    }
+
+    private static long drain(CartOutbox outbox, ExecutorService executor, List<CartOperation> operations) throws Exception {
+        CountDownLatch idle = new CountDownLatch(1);
+        AtomicInteger synced = new AtomicInteger();
+        AtomicInteger largestBatch = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CartSyncer syncer = new CartSyncer(outbox, new FirestoreCartBackend(db, executor), executor, new CartSyncer.Listener() {
+            @Override
+            public void onOperationsSynced(List<CartOperation> batch) {
+                largestBatch.accumulateAndGet(batch.size(), Math::max);
+                synced.addAndGet(batch.size());
+            }
+
+            @Override
+            public void onSyncIdle() {
+                idle.countDown();
+            }
+
+            @Override
+            public void onSyncFailed(Exception e) {
+                failure.set(e);
+                idle.countDown();
+            }
+
+            @Override
+            public void onOperationsRejected(List<CartOperation> batch, Exception e) {
+                failure.set(e);
+                idle.countDown();
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        executor.submit(() -> outbox.enqueueAll(operations)).get();
+        syncer.sync();
+        assertTrue("sync did not finish", idle.await(5, TimeUnit.MINUTES));
+        assertNull(failure.get());
+        assertEquals(operations.size(), synced.get());
+        assertTrue(largestBatch.get() <= CartSyncer.MAX_BATCH_SIZE);
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private static long itemCount(DocumentReference cartRef) throws Exception {
+        return Tasks.await(cartRef.collection("items").count().get(AggregateSource.SERVER)).getCount();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.fruitshop;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Two devices adding the same item at once through FirestoreCartBackend, as CartSyncer sends adds
+ * queued by CartRepository. Runs against the Firestore emulator on the host
+ * (firebase emulators:start --only firestore).
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartConcurrentAddTest {
+
+    private static final int ROUNDS = 20;
+
+    private static FirebaseFirestore db;
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    @BeforeClass
+    public static void useEmulator() {
+        db = FirebaseFirestore.getInstance();
+        db.useEmulator("10.0.2.2", 8080);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder().setPersistenceEnabled(false).build());
+    }
+
+    @Test
+    public void concurrentAdds_fromTwoDevices_areBothKept() throws Exception {
+        CartWriter cartWriter = new CartWriter(db);
+        Item item = new Item("apple", R.drawable.apple, "Fresh Red Apple", Money.ofCents(199), "Crisp and sweet apple, perfect for snacks.");
+        long priceCents = item.getPrice().getCents();
+        String userId = "concurrent-add-" + System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CartBackend phone = new FirestoreCartBackend(db, executor);
+        CartBackend tablet = new FirestoreCartBackend(db, executor);
+
+        CountDownLatch created = apply(phone, upsert(userId, item, 1, 0));
+        assertTrue(created.await(30, TimeUnit.SECONDS));
+        Date addedAt = Tasks.await(cartWriter.cartItemRef(userId, item.getItemId()).get()).getDate(CartItemCodec.TIMESTAMP);
+        assertNotNull(addedAt);
+
+        // Each round both devices saw the same quantity and each added one more.
+        for (int round = 0; round < ROUNDS; round++) {
+            long seen = 1 + 2L * round;
+            CountDownLatch phoneDone = apply(phone, upsert(userId, item, seen + 1, seen));
+            CountDownLatch tabletDone = apply(tablet, upsert(userId, item, seen + 1, seen));
+            assertTrue(phoneDone.await(30, TimeUnit.SECONDS));
+            assertTrue(tabletDone.await(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        long expected = 1 + 2L * ROUNDS;
+        DocumentSnapshot line = Tasks.await(cartWriter.cartItemRef(userId, item.getItemId()).get());
+        assertEquals(Long.valueOf(expected), line.getLong(CartItemCodec.QUANTITY));
+        assertEquals(addedAt, line.getDate(CartItemCodec.TIMESTAMP));
+        CartSummary summary = CartSummary.decode(Tasks.await(cartWriter.cartRef(userId).get()));
+        assertEquals(1, summary.getLineCount());
+        assertEquals(expected, summary.getUnitCount());
+        assertEquals(expected * priceCents, summary.getSubtotalCents());
+        assertNull(failure.get());
+    }
+
+    private static CartOperation upsert(String userId, Item item, long quantity, long baseQuantity) {
+        return CartOperation.upsert(userId, item.getItemId(), item.getDescription(), item.getPrice().getCents(), quantity, item.getImageUrl(), System.currentTimeMillis())
+                .withBase(baseQuantity, item.getPrice().getCents());
+    }
+
+    private CountDownLatch apply(CartBackend backend, CartOperation operation) {
+        CountDownLatch done = new CountDownLatch(1);
+        backend.apply(Collections.singletonList(operation), new CartBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                failure.set(e);
+                done.countDown();
+            }
+
+            @Override
+            public void onRejected(Exception e) {
+                failure.set(e);
+                done.countDown();
+            }
+        });
+        return done;
+    }
+}
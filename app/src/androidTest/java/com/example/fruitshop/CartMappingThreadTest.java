@@ -0,0 +1,85 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fails if CartRepository maps Firestore documents on the main thread, checked through the
+ * observer it runs on the mapping thread before each snapshot.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CartMappingThreadTest {
+
+    @Test
+    public void remoteSnapshots_areNotMappedOnMainThread() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        Tasks.await(db.disableNetwork(), 10, TimeUnit.SECONDS);
+
+        AtomicInteger mapped = new AtomicInteger();
+        AtomicInteger mappedOnMain = new AtomicInteger();
+        CartRepository repository = CartRepository.getInstance(context);
+        repository.setMappingObserver(() -> {
+            mapped.incrementAndGet();
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mappedOnMain.incrementAndGet();
+            }
+        });
+
+        String userId = "mapping-" + System.nanoTime();
+        CountDownLatch delivered = new CountDownLatch(1);
+        CartRepository.CartListener listener = new CartRepository.CartListener() {
+            @Override
+            public void onCartLoaded(List<CartItem> items) {
+            }
+
+            @Override
+            public void onCartItemChanged(CartItem item) {
+                delivered.countDown();
+            }
+
+            @Override
+            public void onCartItemRemoved(String itemId) {
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> repository.observe(userId, listener));
+
+        DocumentReference itemRef = db.collection("carts").document(userId).collection("items").document("apple");
+        Map<String, Object> data = new HashMap<>();
+        data.put("itemName", "Apple");
+        data.put("itemPriceCents", 199L);
+        data.put("quantity", 3L);
+        itemRef.set(data);
+
+        try {
+            assertTrue("remote change was not delivered", delivered.await(10, TimeUnit.SECONDS));
+            assertTrue("no snapshot was mapped", mapped.get() > 0);
+            assertEquals("snapshots mapped on the main thread", 0, mappedOnMain.get());
+        } finally {
+            repository.setMappingObserver(null);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> repository.removeListener(listener));
+            itemRef.delete();
+            db.enableNetwork();
+        }
+    }
+}
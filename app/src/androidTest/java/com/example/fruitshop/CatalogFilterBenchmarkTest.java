@@ -0,0 +1,85 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the bitset catalog filter with a scan over the item list, as the home page used to
+ * filter, on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogFilterBenchmarkTest {
+
+    private static final String TAG = "CatalogFilterBenchmark";
+    private static final Item.Category[] CATEGORIES = Item.Category.values();
+
+    @Test
+    public void filter_isFasterThanListScan() {
+        CatalogFilter.Query query = new CatalogFilter.Query(EnumSet.of(Item.Category.FRUIT), 150, 600, true, CatalogFilter.Sort.PRICE_LOW_TO_HIGH);
+        for (int size : new int[]{10_000, 100_000}) {
+            Random random = new Random(size);
+            List<Item> items = new ArrayList<>(size);
+            long[] prices = new long[size];
+            String[] names = new String[size];
+            Item.Category[] categories = new Item.Category[size];
+            boolean[] available = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                prices[i] = random.nextInt(1_000);
+                names[i] = "Item " + random.nextInt(size);
+                categories[i] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                available[i] = random.nextInt(4) != 0;
+                items.add(new Item("sku" + i, 0, names[i], Money.ofCents(prices[i]), null, categories[i], available[i]));
+            }
+            CatalogFilter filter = CatalogFilter.build(prices, names, categories, available);
+            assertArrayEquals(scan(items, query), filter.apply(query, null));
+
+            int runs = Math.max(3, 200_000 / size);
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < runs; i++) {
+                scan(items, query);
+            }
+            long scanNanos = (SystemClock.elapsedRealtimeNanos() - start) / runs;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < runs; i++) {
+                filter.apply(query, null);
+            }
+            long filterNanos = (SystemClock.elapsedRealtimeNanos() - start) / runs;
+
+            Log.i(TAG, size + " items: list scan " + scanNanos + " ns, bitset filter " + filterNanos + " ns");
+            assertTrue(size + " items: bitset filter " + filterNanos + " ns, list scan " + scanNanos + " ns", filterNanos < scanNanos);
+        }
+    }
+
+    private static int[] scan(List<Item> items, CatalogFilter.Query query) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            long cents = item.getPrice().getCents();
+            if (query.getCategories().contains(item.getCategory()) && (!query.isAvailableOnly() || item.isAvailable())
+                    && cents >= query.getMinPriceCents() && cents <= query.getMaxPriceCents()) {
+                matches.add(i);
+            }
+        }
+        matches.sort(Comparator.<Integer>comparingLong(p -> items.get(p).getPrice().getCents()).thenComparing(Integer::compare));
+        int[] result = new int[matches.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matches.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the old string-array catalog parse with the generated catalog index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogLoadBenchmarkTest {
+
+    private static final String TAG = "CatalogLoadBenchmark";
+    private static final int RUNS = 200;
+
+    @Test
+    public void catalogIndex_isFasterThanResourceParse() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        List<Item> fromResources = loadFromResources(context);
+        List<Item> fromIndex = loadFromIndex();
+        assertEquals(fromResources.size(), fromIndex.size());
+        for (int i = 0; i < fromIndex.size(); i++) {
+            assertEquals(fromResources.get(i).getItemId(), fromIndex.get(i).getItemId());
+            assertEquals(fromResources.get(i).getImageId(), fromIndex.get(i).getImageId());
+            assertEquals(fromResources.get(i).getPrice(), fromIndex.get(i).getPrice());
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            loadFromResources(context);
+        }
+        long resourceNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            loadFromIndex();
+        }
+        long indexNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        Log.i(TAG, "Resource parse: " + resourceNanos + " ns/load, catalog index: " + indexNanos + " ns/load");
+        assertTrue("catalog index took " + indexNanos + " ns, resource parse " + resourceNanos + " ns", indexNanos < resourceNanos);
+    }
+
+    private static List<Item> loadFromIndex() {
+        return new BundledCatalogSource().loadPage(0, CatalogIndex.SIZE);
+    }
+
+    private static List<Item> loadFromResources(Context context) {
+        Resources resources = context.getResources();
+        String[] imageNames = resources.getStringArray(R.array.item_images);
+        String[] descriptions = resources.getStringArray(R.array.item_descriptions);
+        String[] prices = resources.getStringArray(R.array.item_prices);
+        String[] details = resources.getStringArray(R.array.item_details);
+
+        int minLength = Math.min(imageNames.length, Math.min(descriptions.length, Math.min(prices.length, details.length)));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < minLength; i++) {
+            String itemId = imageNames[i].toLowerCase(Locale.ROOT).replaceAll("\\s+", "_");
+            int imageId = resources.getIdentifier(imageNames[i].toLowerCase(Locale.ROOT), "drawable", context.getPackageName());
+            if (imageId != 0) {
+                items.add(new Item(itemId, imageId, descriptions[i], Money.parse(prices[i], Locale.US), details[i]));
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Repricing reads against the Firestore emulator on the host: the whole cart is read in one wave of
+ * whereIn chunks, so the latency should stay flat as the cart grows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogPricesTest {
+
+    private static final String TAG = "CatalogPrices";
+    private static final int CATALOG_SIZE = 300;
+    private static final String PREFIX = "reprice-" + UUID.randomUUID() + "-";
+
+    private static FirebaseFirestore db;
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void seedCatalog() throws Exception {
+        db = FirebaseFirestore.getInstance();
+        db.useEmulator("10.0.2.2", 8080);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder().setPersistenceEnabled(false).build());
+        executor = Executors.newSingleThreadExecutor();
+
+        WriteBatch batch = db.batch();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Item item = new Item(PREFIX + i, 0, "Item " + i, Money.ofCents(200 + i), "", Item.Category.FRUIT, true);
+            Map<String, Object> data = ItemCodec.encode(item);
+            data.put("updatedAt", Timestamp.now());
+            batch.set(db.collection("catalog").document(item.getItemId()), data);
+        }
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("deleted", true);
+        tombstone.put("updatedAt", Timestamp.now());
+        batch.set(db.collection("catalog").document(PREFIX + "gone"), tombstone);
+        Tasks.await(batch.commit());
+    }
+
+    @AfterClass
+    public static void shutDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void fetch_findsRepricedAndDeletedLines() throws Exception {
+        List<CartItem> lines = new ArrayList<>();
+        lines.add(new CartItem(PREFIX + 1, "Item 1", Money.ofCents(201), 2));
+        lines.add(new CartItem(PREFIX + 2, "Item 2", Money.ofCents(150), 1));
+        lines.add(new CartItem(PREFIX + "gone", "Gone", Money.ofCents(99), 1));
+        lines.add(new CartItem("bundled-only", "Bundled", Money.ofCents(99), 1));
+        List<String> itemIds = new ArrayList<>();
+        for (CartItem line : lines) {
+            itemIds.add(line.getItemId());
+        }
+
+        Map<String, Item> catalog = Tasks.await(new CatalogPrices(db, executor).fetch(itemIds));
+
+        assertTrue(catalog.containsKey(PREFIX + "gone"));
+        assertNull(catalog.get(PREFIX + "gone"));
+        assertFalse(catalog.containsKey("bundled-only"));
+        CheckoutResult changed = CheckoutValidator.revalidate(lines, catalog, new HashMap<>());
+        assertEquals(1, changed.getPriceChanges().size());
+        assertEquals(Money.ofCents(202), changed.getPriceChanges().get(0).getNewPrice());
+        assertEquals(1, changed.getUnavailableItemIds().size());
+    }
+
+    @Test
+    public void fetch_latencyIsFlatInCartSize() throws Exception {
+        CatalogPrices catalogPrices = new CatalogPrices(db, executor);
+        StringBuilder report = new StringBuilder();
+        for (int size : new int[]{10, 30, 100, 300}) {
+            List<String> itemIds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                itemIds.add(PREFIX + i);
+            }
+            Tasks.await(catalogPrices.fetch(itemIds));
+            long start = SystemClock.elapsedRealtime();
+            Map<String, Item> catalog = Tasks.await(catalogPrices.fetch(itemIds));
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            assertEquals(size, catalog.size());
+            report.append(size).append(" lines: ").append(elapsed).append(" ms; ");
+        }
+        Log.i(TAG, report.toString());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the catalog search index with a substring scan over every item, as the home page used
+ * to search, on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogSearchBenchmarkTest {
+
+    private static final String TAG = "CatalogSearchBenchmark";
+    private static final String[] WORDS = {"fresh", "red", "green", "yellow", "sweet", "juicy", "crisp", "apple", "banana", "carrot", "cherry",
+            "melon", "tomato", "potato", "organic", "local", "ripe", "crunchy", "spicy", "tropical"};
+    private static final String[] QUERIES = {"sku4242", "sku12345", "banan", "sku9876", "tomato sku5"};
+    private static final int SIZE = 100_000;
+    private static final int RUNS = 20;
+
+    @Test
+    public void searchIndex_isFasterThanSubstringScan() {
+        Random random = new Random(42);
+        String[] descriptions = new String[SIZE];
+        String[] details = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            descriptions[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " sku" + i;
+            details[i] = WORDS[random.nextInt(WORDS.length)] + " and " + WORDS[random.nextInt(WORDS.length)];
+        }
+        CatalogSearchIndex index = CatalogSearchIndex.build(descriptions, details);
+        assertEquals(4242, index.search("sku4242")[0]);
+        assertTrue(scan(descriptions, details, "sku4242") > 0);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            scan(descriptions, details, QUERIES[i % QUERIES.length]);
+        }
+        long scanNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            index.search(QUERIES[i % QUERIES.length]);
+        }
+        long indexNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        Log.i(TAG, SIZE + " items: substring scan " + scanNanos + " ns/query, search index " + indexNanos + " ns/query");
+        assertTrue("search index " + indexNanos + " ns, substring scan " + scanNanos + " ns", indexNanos < scanNanos);
+    }
+
+    private static int scan(String[] descriptions, String[] details, String query) {
+        String[] terms = query.toLowerCase(Locale.ROOT).split("\\s+");
+        int matches = 0;
+        for (int i = 0; i < descriptions.length; i++) {
+            String text = (descriptions[i] + " " + details[i]).toLowerCase(Locale.ROOT);
+            boolean all = true;
+            for (String term : terms) {
+                if (!text.contains(term)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Many users checking out carts full of the same few products at once, against the Firestore
+ * emulator on the host (firebase emulators:start --only firestore). Reports commit latency
+ * percentiles and how many transaction attempts were contention retries.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CheckoutLoadTest {
+
+    private static final String TAG = "CheckoutLoad";
+    private static final int USERS = 50;
+    private static final int THREADS = 16;
+    private static final long INITIAL_STOCK = 10_000;
+    private static final Item[] HOT_PRODUCTS = {
+            new Item("apple", 0, "Fresh Red Apple", Money.ofCents(199), "", Item.Category.FRUIT, true),
+            new Item("banana", 0, "Banana", Money.ofCents(59), "", Item.Category.FRUIT, true),
+            new Item("carrot", 0, "Carrot", Money.ofCents(89), "", Item.Category.VEGETABLE, true),
+            new Item("cherry", 0, "Cherries", Money.ofCents(499), "", Item.Category.FRUIT, true),
+            new Item("broccoli", 0, "Broccoli", Money.ofCents(149), "", Item.Category.VEGETABLE, true)};
+
+    private static FirebaseFirestore db;
+    private static ExecutorService callbackExecutor;
+    private static InventoryCounter inventory;
+
+    @BeforeClass
+    public static void useEmulator() throws Exception {
+        db = FirebaseFirestore.getInstance();
+        db.useEmulator("10.0.2.2", 8080);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder().setPersistenceEnabled(false).build());
+        callbackExecutor = Executors.newFixedThreadPool(4);
+        inventory = new InventoryCounter(db, callbackExecutor);
+
+        WriteBatch batch = db.batch();
+        for (Item item : HOT_PRODUCTS) {
+            Map<String, Object> data = ItemCodec.encode(item);
+            data.put("updatedAt", Timestamp.now());
+            batch.set(db.collection("catalog").document(item.getItemId()), data);
+        }
+        Tasks.await(batch.commit());
+        for (Item item : HOT_PRODUCTS) {
+            Tasks.await(inventory.createCounter(item.getItemId(), InventoryCounter.DEFAULT_SHARD_COUNT, INITIAL_STOCK));
+        }
+    }
+
+    @AfterClass
+    public static void shutDown() {
+        callbackExecutor.shutdown();
+    }
+
+    @Test
+    public void concurrentCheckouts_ofHotProducts() throws Exception {
+        CheckoutService checkoutService = new CheckoutService(db, inventory, callbackExecutor);
+        Map<String, StockLevel> stockBefore = Tasks.await(inventory.getStock(productIds(), 0));
+        String run = UUID.randomUUID().toString();
+        List<String> userIds = new ArrayList<>(USERS);
+        List<List<CartItem>> carts = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            String userId = "checkout-" + run + "-" + i;
+            userIds.add(userId);
+            carts.add(fillCart(userId, 1 + i % 4));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            String userId = userIds.get(i);
+            List<CartItem> lines = carts.get(i);
+            futures.add(pool.submit(() -> {
+                startGate.await();
+                long start = SystemClock.elapsedRealtimeNanos();
+                CheckoutResult result = Tasks.await(checkoutService.placeOrder(UUID.randomUUID().toString(), userId, lines));
+                long elapsedMicros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+                assertEquals(CheckoutResult.Status.PLACED, result.getStatus());
+                return new long[]{elapsedMicros, result.getAttempts() - 1};
+            }));
+        }
+        long wallStart = SystemClock.elapsedRealtime();
+        startGate.countDown();
+
+        long[] latencies = new long[USERS];
+        long retries = 0;
+        for (int i = 0; i < USERS; i++) {
+            long[] outcome = futures.get(i).get();
+            latencies[i] = outcome[0];
+            retries += outcome[1];
+        }
+        long wallMillis = SystemClock.elapsedRealtime() - wallStart;
+        pool.shutdown();
+
+        CartWriter cartWriter = new CartWriter(db);
+        for (String userId : userIds) {
+            assertEquals(0, CartSummary.decode(Tasks.await(cartWriter.cartRef(userId).get())).getLineCount());
+            assertTrue(Tasks.await(cartWriter.cartRef(userId).collection("items").get()).isEmpty());
+        }
+        Map<String, StockLevel> stockAfter = Tasks.await(inventory.getStock(productIds(), 0));
+        for (Item item : HOT_PRODUCTS) {
+            long ordered = 0;
+            for (List<CartItem> lines : carts) {
+                for (CartItem line : lines) {
+                    if (line.getItemId().equals(item.getItemId())) {
+                        ordered += line.getQuantity();
+                    }
+                }
+            }
+            assertEquals(stockBefore.get(item.getItemId()).getAvailable() - ordered, stockAfter.get(item.getItemId()).getAvailable());
+        }
+        Arrays.sort(latencies);
+        Log.i(TAG, USERS + " checkouts in " + wallMillis + " ms: p50 " + percentile(latencies, 50) / 1000 + " ms, p95 " + percentile(latencies, 95) / 1000 + " ms, p99 " + percentile(latencies, 99) / 1000 + " ms, contention retries " + retries);
+    }
+
+    @Test
+    public void retriedCheckout_placesOneOrder() throws Exception {
+        CheckoutService checkoutService = new CheckoutService(db, inventory, callbackExecutor);
+        String userId = "checkout-retry-" + UUID.randomUUID();
+        String orderId = UUID.randomUUID().toString();
+        List<CartItem> lines = fillCart(userId, 3);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<CheckoutResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(pool.submit(() -> {
+                startGate.await();
+                return Tasks.await(checkoutService.placeOrder(orderId, userId, lines));
+            }));
+        }
+        startGate.countDown();
+        List<CheckoutResult.Status> statuses = new ArrayList<>();
+        for (Future<CheckoutResult> future : futures) {
+            statuses.add(future.get().getStatus());
+        }
+        pool.shutdown();
+        Collections.sort(statuses);
+
+        assertEquals(Arrays.asList(CheckoutResult.Status.PLACED, CheckoutResult.Status.ALREADY_PLACED), statuses);
+        CheckoutResult later = Tasks.await(checkoutService.placeOrder(orderId, userId, lines));
+        assertEquals(CheckoutResult.Status.ALREADY_PLACED, later.getStatus());
+        assertEquals(lines.size(), later.getOrder().getLines().size());
+        assertEquals(1, Tasks.await(db.collection("orders").whereEqualTo(Order.USER_ID, userId).get()).size());
+        assertTrue(Tasks.await(new CartWriter(db).cartRef(userId).collection("items").get()).isEmpty());
+    }
+
+    private static List<CartItem> fillCart(String userId, int lineCount) throws Exception {
+        List<CartItem> lines = new ArrayList<>(lineCount);
+        List<CartOperation> operations = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            Item item = HOT_PRODUCTS[i];
+            CartItem line = new CartItem(item.getItemId(), item.getDescription(), item.getPrice(), 1 + i);
+            lines.add(line);
+            operations.add(CartOperation.upsert(userId, item.getItemId(), item.getDescription(), item.getPrice().getCents(), line.getQuantity(), null, System.currentTimeMillis()).withBase(0, 0));
+        }
+        TaskCompletionSource<Void> applied = new TaskCompletionSource<>();
+        new FirestoreCartBackend(db, callbackExecutor).apply(operations, new CartBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                applied.setResult(null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                applied.setException(e);
+            }
+
+            @Override
+            public void onRejected(Exception e) {
+                applied.setException(e);
+            }
+        });
+        Tasks.await(applied.getTask());
+        return lines;
+    }
+
+    private static List<String> productIds() {
+        List<String> itemIds = new ArrayList<>(HOT_PRODUCTS.length);
+        for (Item item : HOT_PRODUCTS) {
+            itemIds.add(item.getItemId());
+        }
+        return itemIds;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the hand-written codecs against Firestore's reflective mapper and compares per-document
+ * decode cost. Documents are written to the local cache with the network disabled.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirestoreCodecTest {
+
+    private static final String TAG = "FirestoreCodec";
+    private static final int RUNS = 2000;
+
+    private static FirebaseFirestore db;
+    private static CollectionReference items;
+
+    @BeforeClass
+    public static void goOffline() throws Exception {
+        db = FirebaseFirestore.getInstance();
+        Tasks.await(db.disableNetwork(), 10, TimeUnit.SECONDS);
+        items = db.collection("carts").document("codec-" + System.nanoTime()).collection("items");
+    }
+
+    @AfterClass
+    public static void goOnline() {
+        db.enableNetwork();
+    }
+
+    @Test
+    public void cartItemCodec_matchesToObject() throws Exception {
+        List<DocumentSnapshot> documents = new ArrayList<>();
+        documents.add(write("cents", cartDocument("Apple", 1.99, 199L, 3L, "https://example.com/apple.png", new Date(1_700_000_000_000L))));
+        documents.add(write("legacy", cartDocument("Banana", 0.35, null, 12L, null, new Date(1_700_000_100_000L))));
+        documents.add(write("mismatch", cartDocument("Cherry", 9.99, 450L, 1L, "", null)));
+        documents.add(write("whole", cartDocument("Durian", 12L, null, 2L, null, new Date(0))));
+        documents.add(write("sparse", new HashMap<>()));
+
+        for (DocumentSnapshot document : documents) {
+            CartItem reflective = document.toObject(CartItem.class);
+            CartItem decoded = CartItemCodec.decode(document);
+            assertTrue(document.getId(), decoded.hasSameContent(reflective));
+            assertEquals(document.getId(), reflective.getItemPriceCents(), decoded.getItemPriceCents());
+        }
+    }
+
+    @Test
+    public void itemCodec_roundTrips() throws Exception {
+        Item item = new Item("kiwi", 0, "Kiwi", Money.ofCents(75), "Tangy and green.", Item.Category.FRUIT, false);
+        item.setImageUrl("https://example.com/kiwi.png");
+        DocumentSnapshot document = write("kiwi", ItemCodec.encode(item));
+
+        Item decoded = ItemCodec.decode(document);
+        assertEquals(item.getItemId(), decoded.getItemId());
+        assertEquals(item.getDescription(), decoded.getDescription());
+        assertEquals(item.getDetails(), decoded.getDetails());
+        assertEquals(item.getPrice(), decoded.getPrice());
+        assertEquals(item.getCategory(), decoded.getCategory());
+        assertEquals(item.isAvailable(), decoded.isAvailable());
+        assertEquals(item.getImageUrl(), decoded.getImageUrl());
+    }
+
+    @Test
+    public void benchmark_decodePerDocument() throws Exception {
+        DocumentSnapshot document = write("bench", cartDocument("Apple", 1.99, 199L, 3L, "https://example.com/apple.png", new Date()));
+        for (int i = 0; i < RUNS / 10; i++) {
+            document.toObject(CartItem.class);
+            CartItemCodec.decode(document);
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            document.toObject(CartItem.class);
+        }
+        long reflectiveNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            CartItemCodec.decode(document);
+        }
+        long codecNanos = (SystemClock.elapsedRealtimeNanos() - start) / RUNS;
+
+        Log.i(TAG, "toObject: " + reflectiveNanos + " ns/doc, CartItemCodec: " + codecNanos + " ns/doc");
+    }
+
+    private static Map<String, Object> cartDocument(String name, Object price, Long priceCents, Long quantity, String imageUrl, Date timestamp) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("itemName", name);
+        data.put("itemPrice", price);
+        if (priceCents != null) {
+            data.put("itemPriceCents", priceCents);
+        }
+        data.put("quantity", quantity);
+        if (imageUrl != null) {
+            data.put("imageUrl", imageUrl);
+        }
+        if (timestamp != null) {
+            data.put("timestamp", timestamp);
+        }
+        return data;
+    }
+
+    private static DocumentSnapshot write(String id, Map<String, Object> data) throws Exception {
+        DocumentReference ref = items.document(id);
+        ref.set(data);
+        return Tasks.await(ref.get(Source.CACHE), 10, TimeUnit.SECONDS);
+    }
+}
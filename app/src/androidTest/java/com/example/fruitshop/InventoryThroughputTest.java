@@ -0,0 +1,162 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.TransactionOptions;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Concurrent stock decrements on one product against the Firestore emulator on the host, comparing
+ * a read-check-write stock field, blind decrements on a single counter document, and blind
+ * decrements spread over shards. The emulator does not throttle sustained writes per document, so
+ * this measures transaction contention, not production's per-document write limit.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryThroughputTest {
+
+    private static final String TAG = "InventoryThroughput";
+    private static final int DECREMENTS = 400;
+    private static final int WORKERS = 16;
+    private static final long INITIAL_STOCK = 100_000;
+    // Enough for the read-check-write design to finish under contention instead of giving up.
+    private static final TransactionOptions PATIENT = new TransactionOptions.Builder().setMaxAttempts(100).build();
+
+    private static FirebaseFirestore db;
+    private static ExecutorService callbackExecutor;
+    private static InventoryCounter inventory;
+
+    @BeforeClass
+    public static void useEmulator() {
+        db = FirebaseFirestore.getInstance();
+        db.useEmulator("10.0.2.2", 8080);
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder().setPersistenceEnabled(false).build());
+        callbackExecutor = Executors.newFixedThreadPool(4);
+        inventory = new InventoryCounter(db, callbackExecutor);
+    }
+
+    @AfterClass
+    public static void shutDown() {
+        callbackExecutor.shutdown();
+    }
+
+    @Test
+    public void shardedCounter_versusSingleDocument() throws Exception {
+        String readCheckWrite = measureReadCheckWrite();
+        String singleCounter = measureCounter(1);
+        String sharded = measureCounter(InventoryCounter.DEFAULT_SHARD_COUNT);
+        Log.i(TAG, DECREMENTS + " decrements from " + WORKERS + " workers\n  read-check-write: " + readCheckWrite + "\n  1 shard: " + singleCounter + "\n  " + InventoryCounter.DEFAULT_SHARD_COUNT + " shards: " + sharded);
+    }
+
+    @Test
+    public void rolledUpStock_readsCountersInOneQueryAndRollsUpLegacyOnes() throws Exception {
+        String suffix = "-" + UUID.randomUUID();
+        List<String> itemIds = Arrays.asList("apple" + suffix, "pear" + suffix, "legacy" + suffix, "untracked" + suffix);
+        Tasks.await(inventory.createCounter(itemIds.get(0), InventoryCounter.DEFAULT_SHARD_COUNT, 40));
+        Tasks.await(inventory.createCounter(itemIds.get(1), 1, 7));
+        // A counter written before the roll-up field existed.
+        Tasks.await(inventory.createCounter(itemIds.get(2), 2, 9));
+        Tasks.await(inventory.counterRef(itemIds.get(2)).update(InventoryCounter.AVAILABLE, FieldValue.delete()));
+
+        Map<String, StockLevel> levels = Tasks.await(inventory.getRolledUpStock(itemIds, 0));
+
+        assertEquals(3, levels.size());
+        assertEquals(40, levels.get(itemIds.get(0)).getAvailable());
+        assertEquals(7, levels.get(itemIds.get(1)).getAvailable());
+        assertEquals(9, levels.get(itemIds.get(2)).getAvailable());
+        Long rolledUp = null;
+        for (int i = 0; i < 50 && rolledUp == null; i++) {
+            rolledUp = Tasks.await(inventory.counterRef(itemIds.get(2)).get()).getLong(InventoryCounter.AVAILABLE);
+            if (rolledUp == null) {
+                SystemClock.sleep(100);
+            }
+        }
+        assertEquals(Long.valueOf(9), rolledUp);
+    }
+
+    private String measureReadCheckWrite() throws Exception {
+        DocumentReference productRef = db.collection("inventory-single").document("strawberry-" + UUID.randomUUID());
+        Tasks.await(productRef.set(Collections.singletonMap("stock", INITIAL_STOCK)));
+        AtomicInteger attempts = new AtomicInteger();
+        String report = run(() -> Tasks.await(db.runTransaction(PATIENT, transaction -> {
+            attempts.incrementAndGet();
+            Long stock = transaction.get(productRef).getLong("stock");
+            if (stock == null || stock < 1) {
+                throw new FirebaseFirestoreException("Out of stock", FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+            }
+            transaction.update(productRef, "stock", stock - 1);
+            return null;
+        })), attempts);
+        assertEquals(Long.valueOf(INITIAL_STOCK - DECREMENTS), Tasks.await(productRef.get()).getLong("stock"));
+        return report;
+    }
+
+    private String measureCounter(int shardCount) throws Exception {
+        String itemId = "strawberry-" + shardCount + "-" + UUID.randomUUID();
+        Tasks.await(inventory.createCounter(itemId, shardCount, INITIAL_STOCK));
+        StockLevel level = Tasks.await(inventory.getStock(Collections.singletonList(itemId), 0)).get(itemId);
+        AtomicInteger attempts = new AtomicInteger();
+        String report = run(() -> Tasks.await(db.runTransaction(PATIENT, transaction -> {
+            attempts.incrementAndGet();
+            inventory.decrement(transaction, level, 1);
+            return null;
+        })), attempts);
+        assertEquals(INITIAL_STOCK - DECREMENTS, Tasks.await(inventory.getStock(Collections.singletonList(itemId), 0)).get(itemId).getAvailable());
+        return report;
+    }
+
+    private static String run(Decrement decrement, AtomicInteger attempts) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WORKERS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>(DECREMENTS);
+        for (int i = 0; i < DECREMENTS; i++) {
+            futures.add(pool.submit(() -> {
+                startGate.await();
+                long start = SystemClock.elapsedRealtimeNanos();
+                decrement.run();
+                return (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+            }));
+        }
+        long wallStart = SystemClock.elapsedRealtime();
+        startGate.countDown();
+        long[] latencies = new long[DECREMENTS];
+        for (int i = 0; i < DECREMENTS; i++) {
+            latencies[i] = futures.get(i).get();
+        }
+        long wallMillis = Math.max(1, SystemClock.elapsedRealtime() - wallStart);
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        return DECREMENTS * 1000L / wallMillis + " decrements/s, p50 " + latencies[DECREMENTS / 2] / 1000 + " ms, p95 " + latencies[DECREMENTS * 95 / 100] / 1000 + " ms, retries " + (attempts.get() - DECREMENTS);
+    }
+
+    private interface Decrement {
+        void run() throws Exception;
+    }
+}
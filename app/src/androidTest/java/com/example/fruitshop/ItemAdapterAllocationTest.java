@@ -0,0 +1,108 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts allocations made by ItemAdapter while a small pool of holders is rebound to different
+ * rows, as in steady-state scrolling. Glide requests are left out, and the framework's own cost of
+ * updating the row views is measured separately, so what remains is the adapter's.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemAdapterAllocationTest {
+
+    private static final String TAG = "ItemAdapterAllocation";
+    private static final int RUNS = 200;
+    private static final int POOL_SIZE = 8;
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void rebindingPooledHolders_allocatesNothingBeyondTheViews() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            List<Item> items = new BundledCatalogSource().loadPage(0, CatalogIndex.SIZE);
+            assertTrue(items.size() > POOL_SIZE);
+            ItemAdapter adapter = new ItemAdapter(items, new NoOpImageLoader(context));
+            FrameLayout parent = new FrameLayout(context);
+            ItemAdapter.ItemViewHolder[] holders = new ItemAdapter.ItemViewHolder[POOL_SIZE];
+            for (int i = 0; i < holders.length; i++) {
+                holders[i] = adapter.onCreateViewHolder(parent, 0);
+            }
+            bindRotating(adapter, holders, items.size(), 0);
+            setTextsRotating(items, holders, 0);
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int run = 1; run <= RUNS; run++) {
+                setTextsRotating(items, holders, run);
+            }
+            int viewAllocations = Debug.getThreadAllocCount();
+
+            Debug.resetThreadAllocCount();
+            for (int run = 1; run <= RUNS; run++) {
+                bindRotating(adapter, holders, items.size(), run);
+            }
+            int bindAllocations = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+
+            Log.i(TAG, bindAllocations + " allocations over " + RUNS * items.size() + " binds, " + viewAllocations + " from the views alone");
+            assertTrue("binds " + bindAllocations + ", views alone " + viewAllocations, bindAllocations <= viewAllocations);
+        });
+    }
+
+    private static void bindRotating(ItemAdapter adapter, ItemAdapter.ItemViewHolder[] holders, int size, int run) {
+        for (int i = 0; i < size; i++) {
+            adapter.onBindViewHolder(holders[i % holders.length], (run + i) % size);
+        }
+    }
+
+    // The same view updates a bind to a new row makes, without the adapter.
+    private static void setTextsRotating(List<Item> items, ItemAdapter.ItemViewHolder[] holders, int run) {
+        int size = items.size();
+        for (int i = 0; i < size; i++) {
+            ItemAdapter.ItemViewHolder holder = holders[i % holders.length];
+            Item item = items.get((run + i) % size);
+            holder.descriptionTextView.setText(item.getDescription());
+            holder.detailsTextView.setText(item.getDetails());
+            holder.priceTextView.setText(item.getFormattedPrice());
+            if (holder.stockTextView != null) {
+                holder.stockTextView.setVisibility(View.GONE);
+            }
+            if (holder.addToCartButton != null) {
+                holder.addToCartButton.setEnabled(true);
+            }
+        }
+    }
+
+    private static class NoOpImageLoader extends CatalogImageLoader {
+        NoOpImageLoader(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void load(ImageView imageView, Item item) {
+        }
+
+        @Override
+        public void loadPlaceholder(ImageView imageView) {
+        }
+
+        @Override
+        public void clear(ImageView imageView) {
+        }
+    }
+}
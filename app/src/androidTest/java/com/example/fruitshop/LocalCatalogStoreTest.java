@@ -0,0 +1,128 @@
+package com.example.fruitshop;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class LocalCatalogStoreTest {
+
+    private CatalogDatabaseHelper dbHelper;
+    private LocalCatalogStore store;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbHelper = new CatalogDatabaseHelper(context, null);
+        store = new LocalCatalogStore(dbHelper, DrawableResolver.getInstance(context));
+        store.seedFromBundle();
+    }
+
+    @Test
+    public void seed_matchesBundledCatalogOrder() {
+        assertEquals(CatalogIndex.SIZE, store.count());
+        List<Item> page = store.loadPageAfter(null, CatalogIndex.SIZE).items;
+        for (int i = 0; i < CatalogIndex.SIZE; i++) {
+            assertEquals(CatalogIndex.ITEM_IDS[i], page.get(i).getItemId());
+            assertEquals(CatalogIndex.PRICE_CENTS[i], page.get(i).getPrice().getCents());
+            assertNotEquals(0, page.get(i).getImageId());
+        }
+        assertEquals(0, store.getWatermark());
+        assertEquals(0, store.getSnapshotVersion());
+    }
+
+    @Test
+    public void applyChanges_upsertsDeletesAndAdvancesWatermark() {
+        String repriced = CatalogIndex.ITEM_IDS[0];
+        String removed = CatalogIndex.ITEM_IDS[1];
+        Item item = new Item(repriced, 0, "Repriced", Money.ofCents(12_345), "details", Item.Category.FRUIT, false);
+        List<CatalogChange> changes = Arrays.asList(CatalogChange.upsert(item, 0, 1_000), CatalogChange.delete(removed, 2_000));
+
+        assertEquals(2, store.applyChanges(changes));
+        assertEquals(CatalogIndex.SIZE - 1, store.count());
+        assertEquals(2_000, store.getWatermark());
+        assertEquals(1, store.getSnapshotVersion());
+        Item first = store.loadPageAfter(null, 1).items.get(0);
+        assertEquals(12_345, first.getPrice().getCents());
+        assertEquals(false, first.isAvailable());
+
+        assertEquals(0, store.applyChanges(changes));
+        assertEquals(1, store.getSnapshotVersion());
+
+        assertEquals(0, store.applyChanges(Collections.singletonList(CatalogChange.upsert(new Item(repriced, 0, "Stale", Money.ofCents(1), "details", Item.Category.FRUIT, true), 0, 500))));
+        assertEquals(12_345, store.loadPageAfter(null, 1).items.get(0).getPrice().getCents());
+    }
+
+    @Test
+    public void seedFromBundle_remergesChangedBundleWithoutUndoingRemoteChanges() {
+        String repriced = CatalogIndex.ITEM_IDS[0];
+        String removed = CatalogIndex.ITEM_IDS[1];
+        String bundled = CatalogIndex.ITEM_IDS[2];
+        Item item = new Item(repriced, 0, "Repriced", Money.ofCents(12_345), "details", Item.Category.FRUIT, true);
+        store.applyChanges(Arrays.asList(CatalogChange.upsert(item, 0, 1_000), CatalogChange.delete(removed, 2_000)));
+
+        // Simulate the bundled row changing in an app update.
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues stale = new ContentValues();
+        stale.put("price_cents", 1);
+        db.update(CatalogDatabaseHelper.TABLE_ITEMS, stale, "item_id = ?", new String[]{bundled});
+        store.seedFromBundle();
+        assertEquals(1, priceOf(bundled));
+
+        db.delete(CatalogDatabaseHelper.TABLE_META, "meta_key = ?", new String[]{"bundle_hash"});
+        store.seedFromBundle();
+
+        assertEquals(CatalogIndex.PRICE_CENTS[2], priceOf(bundled));
+        assertEquals(12_345, priceOf(repriced));
+        assertEquals(-1, priceOf(removed));
+        assertEquals(CatalogIndex.SIZE - 1, store.count());
+        assertEquals(2_000, store.getWatermark());
+        assertEquals(2, store.getSnapshotVersion());
+    }
+
+    @Test
+    public void localSource_readsTheSameRowsInOrderAndAfterJumps() {
+        List<Item> all = store.loadPageAfter(null, store.count()).items;
+
+        LocalCatalogSource inOrder = new LocalCatalogSource(store);
+        for (int start = 0; start < all.size(); start += 4) {
+            assertPage(all, start, inOrder.loadPage(start, 4));
+        }
+
+        LocalCatalogSource jumping = new LocalCatalogSource(store);
+        int[] starts = {9, 2, 13, 0, 5};
+        for (int start : starts) {
+            assertPage(all, start, jumping.loadPage(start, 4));
+        }
+    }
+
+    private static void assertPage(List<Item> all, int start, List<Item> page) {
+        assertEquals(Math.min(4, all.size() - start), page.size());
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(all.get(start + i).getItemId(), page.get(i).getItemId());
+        }
+    }
+
+    private long priceOf(String itemId) {
+        for (Item item : store.loadPageAfter(null, store.count()).items) {
+            if (item.getItemId().equals(itemId)) {
+                return item.getPrice().getCents();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.fruitshop;
+
+import java.util.Objects;
+
+/**
+ * Live price and stock of one product as overlaid on the catalog. Products the server knows
+ * nothing about keep their local price, and products without an inventory counter are untracked.
+ */
+public final class Availability {
+
+    static final long UNKNOWN = -1;
+
+    private final String itemId;
+    private final long priceCents;
+    private final boolean available;
+    private final long stock;
+
+    public Availability(String itemId, long priceCents, boolean available, long stock) {
+        this.itemId = itemId;
+        this.priceCents = priceCents;
+        this.available = available;
+        this.stock = stock;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public boolean hasPrice() {
+        return priceCents != UNKNOWN;
+    }
+
+    public Money getPrice() {
+        return Money.ofCents(priceCents);
+    }
+
+    public boolean isTracked() {
+        return stock != UNKNOWN;
+    }
+
+    public long getStock() {
+        return stock;
+    }
+
+    public boolean isAvailable() {
+        return available && (!isTracked() || stock > 0);
+    }
+
+    /** Returns {@code item} with the live price, or the item itself when the price is unchanged. */
+    public Item applyTo(Item item) {
+        if (!hasPrice() || item.getPrice().getCents() == priceCents) {
+            return item;
+        }
+        Item priced = new Item(item.getItemId(), item.getImageId(), item.getDescription(), getPrice(), item.getDetails(), item.getCategory(), item.isAvailable());
+        priced.setImageUrl(item.getImageUrl());
+        return priced;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Availability)) {
+            return false;
+        }
+        Availability other = (Availability) o;
+        return priceCents == other.priceCents && available == other.available && stock == other.stock && Objects.equals(itemId, other.itemId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(itemId, priceCents, available, stock);
+    }
+}
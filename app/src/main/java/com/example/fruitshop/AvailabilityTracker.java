@@ -0,0 +1,247 @@
+package com.example.fruitshop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps live availability for the rows around the viewport. When a row close to the viewport has
+ * nothing fresh, every uncovered row within {@link #FETCH_MARGIN} is subscribed in chunks of
+ * {@link #MAX_IDS_PER_QUERY}, so requests follow scroll distance rather than binds. Subscriptions
+ * whose rows are all more than {@link #DROP_DISTANCE} rows away are cancelled; their results stay
+ * cached for {@link #TTL_MS}. Must be used from one thread, which the fetcher calls back on.
+ */
+public class AvailabilityTracker {
+
+    static final int NEED_MARGIN = 5;
+    static final int FETCH_MARGIN = 30;
+    static final int DROP_DISTANCE = 100;
+    static final int MAX_IDS_PER_QUERY = 30;
+    static final long TTL_MS = 60_000;
+    static final long ERROR_BACKOFF_MS = 10_000;
+
+    public interface Host {
+        int getItemCount();
+
+        /** The item id at an adapter position, or null while that row is not loaded. */
+        String itemIdAt(int position);
+
+        void onAvailabilityChanged(int position);
+    }
+
+    public interface Fetcher {
+        Subscription subscribe(List<String> itemIds, Callback callback);
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    public interface Callback {
+        void onAvailability(List<Availability> results);
+
+        void onError(Exception e);
+    }
+
+    private final Host host;
+    private final Fetcher fetcher;
+    private final LongSupplier clock;
+    private final Map<String, CachedAvailability> cache = new HashMap<>();
+    private final Map<String, Long> retryAfter = new HashMap<>();
+    private final Set<String> subscribedIds = new HashSet<>();
+    private final List<ActiveSubscription> subscriptions = new ArrayList<>();
+    private int first = -1;
+    private int last = -1;
+
+    public AvailabilityTracker(Host host, Fetcher fetcher, LongSupplier clock) {
+        this.host = host;
+        this.fetcher = fetcher;
+        this.clock = clock;
+    }
+
+    public Availability peek(String itemId) {
+        CachedAvailability cached = cache.get(itemId);
+        return cached != null ? cached.availability : null;
+    }
+
+    public void onVisibleRange(int first, int last) {
+        this.first = first;
+        this.last = last;
+        if (first < 0 || last < first) {
+            return;
+        }
+        dropFarSubscriptions();
+
+        long now = clock.getAsLong();
+        int count = host.getItemCount();
+        boolean needed = false;
+        for (int position = Math.max(0, first - NEED_MARGIN); position <= Math.min(count - 1, last + NEED_MARGIN) && !needed; position++) {
+            String itemId = host.itemIdAt(position);
+            needed = itemId != null && !isCovered(itemId, now);
+        }
+        if (!needed) {
+            return;
+        }
+
+        List<String> chunk = new ArrayList<>(MAX_IDS_PER_QUERY);
+        int chunkStart = -1;
+        int chunkEnd = -1;
+        for (int position = Math.max(0, first - FETCH_MARGIN); position <= Math.min(count - 1, last + FETCH_MARGIN); position++) {
+            String itemId = host.itemIdAt(position);
+            if (itemId == null || isCovered(itemId, now) || chunk.contains(itemId)) {
+                continue;
+            }
+            if (chunk.isEmpty()) {
+                chunkStart = position;
+            }
+            chunk.add(itemId);
+            chunkEnd = position;
+            if (chunk.size() == MAX_IDS_PER_QUERY) {
+                subscribe(chunk, chunkStart, chunkEnd);
+                chunk = new ArrayList<>(MAX_IDS_PER_QUERY);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            subscribe(chunk, chunkStart, chunkEnd);
+        }
+    }
+
+    /** Adapter positions no longer mean what they did, so every subscription is dropped; the cache stays. */
+    public void onDataSetChanged() {
+        cancelAll();
+        if (first >= 0) {
+            onVisibleRange(first, last);
+        }
+    }
+
+    public void release() {
+        cancelAll();
+    }
+
+    int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    private boolean isCovered(String itemId, long now) {
+        if (subscribedIds.contains(itemId)) {
+            return true;
+        }
+        Long retryAt = retryAfter.get(itemId);
+        if (retryAt != null && now < retryAt) {
+            return true;
+        }
+        CachedAvailability cached = cache.get(itemId);
+        return cached != null && now - cached.fetchedAt <= TTL_MS;
+    }
+
+    private void subscribe(List<String> itemIds, int minPosition, int maxPosition) {
+        ActiveSubscription active = new ActiveSubscription(itemIds, minPosition, maxPosition);
+        subscriptions.add(active);
+        subscribedIds.addAll(itemIds);
+        active.handle = fetcher.subscribe(itemIds, new Callback() {
+            @Override
+            public void onAvailability(List<Availability> results) {
+                if (!active.cancelled) {
+                    apply(results);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (active.cancelled) {
+                    return;
+                }
+                long retryAt = clock.getAsLong() + ERROR_BACKOFF_MS;
+                for (String itemId : active.itemIds) {
+                    retryAfter.put(itemId, retryAt);
+                }
+                cancel(active);
+            }
+        });
+        if (active.cancelled) {
+            active.handle.cancel();
+        }
+    }
+
+    private void apply(List<Availability> results) {
+        long now = clock.getAsLong();
+        Set<String> changed = new HashSet<>();
+        for (Availability availability : results) {
+            String itemId = availability.getItemId();
+            CachedAvailability previous = cache.put(itemId, new CachedAvailability(availability, now));
+            retryAfter.remove(itemId);
+            if (previous == null || !previous.availability.equals(availability)) {
+                changed.add(itemId);
+            }
+        }
+        if (changed.isEmpty() || first < 0) {
+            return;
+        }
+        int count = host.getItemCount();
+        for (int position = Math.max(0, first - NEED_MARGIN); position <= Math.min(count - 1, last + NEED_MARGIN); position++) {
+            String itemId = host.itemIdAt(position);
+            if (itemId != null && changed.contains(itemId)) {
+                host.onAvailabilityChanged(position);
+            }
+        }
+    }
+
+    private void dropFarSubscriptions() {
+        for (ActiveSubscription active : new ArrayList<>(subscriptions)) {
+            if (active.maxPosition < first - DROP_DISTANCE || active.minPosition > last + DROP_DISTANCE) {
+                cancel(active);
+            }
+        }
+    }
+
+    private void cancelAll() {
+        for (ActiveSubscription active : new ArrayList<>(subscriptions)) {
+            cancel(active);
+        }
+    }
+
+    private void cancel(ActiveSubscription active) {
+        active.cancelled = true;
+        if (active.handle != null) {
+            active.handle.cancel();
+        }
+        subscriptions.remove(active);
+        subscribedIds.removeAll(active.itemIds);
+        long now = clock.getAsLong();
+        for (String itemId : active.itemIds) {
+            CachedAvailability cached = cache.get(itemId);
+            if (cached != null) {
+                // The live updates stop here, so the time to live starts now.
+                cache.put(itemId, new CachedAvailability(cached.availability, now));
+            }
+        }
+    }
+
+    private static class CachedAvailability {
+        final Availability availability;
+        final long fetchedAt;
+
+        CachedAvailability(Availability availability, long fetchedAt) {
+            this.availability = availability;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static class ActiveSubscription {
+        final List<String> itemIds;
+        final int minPosition;
+        final int maxPosition;
+        Subscription handle;
+        boolean cancelled;
+
+        ActiveSubscription(List<String> itemIds, int minPosition, int maxPosition) {
+            this.itemIds = itemIds;
+            this.minPosition = minPosition;
+            this.maxPosition = maxPosition;
+        }
+    }
+}
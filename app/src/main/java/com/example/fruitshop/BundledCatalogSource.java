@@ -0,0 +1,22 @@
+package com.example.fruitshop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BundledCatalogSource implements CatalogSource {
+
+    @Override
+    public int size() {
+        return CatalogIndex.SIZE;
+    }
+
+    @Override
+    public List<Item> loadPage(int start, int count) {
+        int end = Math.min(start + count, CatalogIndex.SIZE);
+        List<Item> page = new ArrayList<>(Math.max(end - start, 0));
+        for (int i = start; i < end; i++) {
+            page.add(new Item(CatalogIndex.ITEM_IDS[i], CatalogIndex.IMAGE_IDS[i], CatalogIndex.DESCRIPTIONS[i], Money.ofCents(CatalogIndex.PRICE_CENTS[i]), CatalogIndex.DETAILS[i], Item.Category.fromKey(CatalogIndex.CATEGORIES[i]), CatalogIndex.AVAILABLE[i]));
+        }
+        return page;
+    }
+}
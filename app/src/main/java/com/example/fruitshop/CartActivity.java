@@ -2,6 +2,7 @@ package com.example.fruitshop;
 
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
@@ -9,6 +10,7 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -18,15 +20,11 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
+
 
 public class CartActivity extends AppCompatActivity implements CartAdapter.OnCartItemInteractionListener {
 
@@ -40,7 +38,82 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
     private Toolbar toolbar;
     private View bottomSummaryLayout;
 
-    private List<CartItem> cartItemList;
+    private CartSnapshot cartSnapshot = CartSnapshot.EMPTY;
+    private CartStore cartStore;
+    private CartRepository cartRepository;
+    private final OnBackPressedCallback clearSelectionOnBack = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            cartAdapter.clearSelection();
+        }
+    };
+    private final CartRepository.BulkListener bulkListener = new CartRepository.BulkListener() {
+        @Override
+        public void onBulkProgress(int done, int total) {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle("Syncing " + done + " of " + total + "...");
+            }
+        }
+
+        @Override
+        public void onBulkComplete(int total, int failedCount) {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle(null);
+            }
+            if (failedCount > 0) {
+                Toast.makeText(CartActivity.this, failedCount + " of " + total + " cart changes could not be saved.", Toast.LENGTH_LONG).show();
+            } else {
+                Log.d(TAG, "Bulk cart change of " + total + " lines synced.");
+            }
+        }
+    };
+    private final CartRepository.MutationListener mutationListener = (itemId, e) -> {
+        Log.w(TAG, "Cart change for " + itemId + " was rejected and rolled back.", e);
+        Toast.makeText(this, "Could not save your cart change. It has been undone.", Toast.LENGTH_LONG).show();
+    };
+
+    private final CartRepository.CheckoutListener checkoutListener = new CartRepository.CheckoutListener() {
+        @Override
+        public void onCheckoutFinished(CheckoutResult result) {
+            if (isDestroyed()) {
+                return;
+            }
+            setCheckoutInProgress(false);
+            switch (result.getStatus()) {
+                case PLACED:
+                case ALREADY_PLACED:
+                    Order order = result.getOrder();
+                    Log.i(TAG, "Order " + order.getOrderId() + " placed after " + result.getAttempts() + " attempts.");
+                    Toast.makeText(CartActivity.this, "Order placed! Total: " + Money.ofCents(order.getSubtotalCents()).format(), Toast.LENGTH_LONG).show();
+                    break;
+                case ITEMS_CHANGED:
+                    showItemsChanged(result.getPriceChanges(), result.getUnavailableItemIds());
+                    break;
+                case TOO_LARGE:
+                    Toast.makeText(CartActivity.this, "Your cart is too large to check out at once. Remove some items and try again.", Toast.LENGTH_LONG).show();
+                    break;
+                default:
+                    Toast.makeText(CartActivity.this, "Your cart changed on another device. Please review it and try again.", Toast.LENGTH_LONG).show();
+                    break;
+            }
+        }
+
+        @Override
+        public void onCheckoutFailed(Exception e) {
+            if (isDestroyed()) {
+                return;
+            }
+            setCheckoutInProgress(false);
+            Log.e(TAG, "Checkout failed.", e);
+            Toast.makeText(CartActivity.this, "Could not place your order. Check your connection and try again.", Toast.LENGTH_LONG).show();
+        }
+    };
+    private final CartRepository.RepriceListener repriceListener = (priceChanges, unavailableItemIds) -> {
+        if (!isDestroyed()) {
+            showItemsChanged(priceChanges, unavailableItemIds);
+        }
+    };
+    private boolean checkoutInProgress;
 
     private FirebaseFirestore db;
     private FirebaseAuth mAuth;
@@ -61,12 +134,16 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
 
         setupListeners();
 
-        cartAdapter = new CartAdapter(this, cartItemList, this);
-        cartRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        cartRecyclerView.setAdapter(cartAdapter);
+        getOnBackPressedDispatcher().addCallback(this, clearSelectionOnBack);
+        cartStore = CartStore.getInstance(this);
+        cartRepository = CartRepository.getInstance(this);
+        cartRepository.addMutationListener(mutationListener);
 
         if (currentUser != null) {
             loadCartItems();
+            if (savedInstanceState == null) {
+                cartRepository.reprice(currentUser.getUid(), repriceListener);
+            }
         } else {
             Toast.makeText(this, "Please log in to view your cart.", Toast.LENGTH_LONG).show();
             updateUIForEmptyCart();
@@ -113,9 +190,7 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
             return;
         }
 
-        cartItemList = new ArrayList<>();
-
-        cartAdapter = new CartAdapter(this, cartItemList, this);
+        cartAdapter = new CartAdapter(this, this);
 
         cartRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         cartRecyclerView.setAdapter(cartAdapter);
@@ -142,18 +217,39 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
         }
 
         checkoutButton.setOnClickListener(v -> {
-            if (cartItemList == null || cartItemList.isEmpty()) {
+            if (cartSnapshot.isEmpty()) {
                 Toast.makeText(CartActivity.this, "Your cart is empty. Add items to proceed.", Toast.LENGTH_LONG).show();
-            } else {
-                String totalPriceString = totalPriceTextView.getText().toString();
-                Toast.makeText(CartActivity.this, "Proceeding to checkout... (" + totalPriceString + ")", Toast.LENGTH_LONG).show();
-                Log.i(TAG, "Checkout button clicked. Total: " + totalPriceString);
+            } else if (currentUser != null && !checkoutInProgress) {
+                Log.i(TAG, "Checkout button clicked. Total: " + Money.ofCents(cartSnapshot.getSubtotalCents()).format());
+                setCheckoutInProgress(true);
+                cartRepository.checkout(currentUser.getUid(), checkoutListener);
             }
         });
 
         Log.d(TAG, "Listeners setup complete.");
     }
 
+    private void setCheckoutInProgress(boolean inProgress) {
+        checkoutInProgress = inProgress;
+        if (checkoutButton != null) {
+            checkoutButton.setEnabled(!inProgress && !cartSnapshot.isEmpty());
+            checkoutButton.setText(inProgress ? R.string.placing_order : R.string.proceed_to_checkout);
+        }
+    }
+
+    private void showItemsChanged(List<PriceChange> priceChanges, List<String> unavailableItemIds) {
+        StringBuilder message = new StringBuilder();
+        for (PriceChange change : priceChanges) {
+            message.append(change.getItemName()).append(" is now ").append(change.getNewPrice().format()).append(" (was ").append(change.getOldPrice().format()).append(").\n");
+        }
+        for (String itemId : unavailableItemIds) {
+            CartItem line = cartSnapshot.findById(itemId);
+            message.append(line != null ? line.getItemName() : itemId).append(" is no longer available.\n");
+        }
+        message.append("Please review your cart before checking out.");
+        new AlertDialog.Builder(this).setTitle("Cart Updated").setMessage(message.toString()).setPositiveButton("OK", null).show();
+    }
+
     private void loadCartItems() {
         if (currentUser == null) {
             Log.w(TAG, "User not logged in. Cannot load cart items.");
@@ -165,50 +261,37 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
         String userId = currentUser.getUid();
         Log.d(TAG, "Loading cart items for user: " + userId);
 
-        if (emptyCartTextView != null) {
-            emptyCartTextView.setText("Loading cart...");
-            emptyCartTextView.setVisibility(View.VISIBLE);
+        if (!userId.equals(cartStore.getValue().getUserId()) || !cartStore.getValue().isLoaded()) {
+            if (emptyCartTextView != null) {
+                emptyCartTextView.setText("Loading cart...");
+                emptyCartTextView.setVisibility(View.VISIBLE);
+            }
+            if (cartRecyclerView != null) {
+                cartRecyclerView.setVisibility(View.GONE);
+            }
+            if (bottomSummaryLayout != null) {
+                bottomSummaryLayout.setVisibility(View.GONE);
+            }
         }
-        if (cartRecyclerView != null) {
-            cartRecyclerView.setVisibility(View.GONE);
+
+        cartStore.observe(this, this::showCart);
+    }
+
+    private void showCart(CartSnapshot snapshot) {
+        if (!snapshot.isLoaded() || !currentUser.getUid().equals(snapshot.getUserId())) {
+            return;
         }
-        if (bottomSummaryLayout != null) {
-            bottomSummaryLayout.setVisibility(View.GONE);
-        }
-
-
-        db.collection("carts").document(userId).collection("items").orderBy("timestamp", Query.Direction.ASCENDING).get().addOnCompleteListener(task -> {
-            if (task.isSuccessful()) {
-                cartItemList.clear();
-                QuerySnapshot snapshots = task.getResult();
-                if (snapshots != null && !snapshots.isEmpty()) {
-                    for (QueryDocumentSnapshot document : snapshots) {
-                        CartItem cartItem = document.toObject(CartItem.class);
-                        if (cartItem.getItemId() == null || cartItem.getItemId().isEmpty()) {
-                            cartItem.setItemId(document.getId());
-                        }
-                        cartItemList.add(cartItem);
-                        Log.d(TAG, "Loaded item: " + cartItem.getItemName() + ", Qty: " + cartItem.getQuantity() + ", Price: " + cartItem.getItemPrice() + ", ID: " + cartItem.getItemId());
-                    }
-                    Log.d(TAG, "Total items loaded: " + cartItemList.size());
-                } else {
-                    Log.d(TAG, "Cart is empty for user: " + userId + " or no items found.");
-                }
-                updateCartUI();
-            } else {
-                Log.e(TAG, "Error loading cart items: ", task.getException());
-                Toast.makeText(CartActivity.this, "Error loading cart items.", Toast.LENGTH_SHORT).show();
-                updateUIForEmptyCart();
-                if (emptyCartTextView != null) {
-                    emptyCartTextView.setText("Could not load cart.");
-                }
-            }
-        });
+        cartSnapshot = snapshot;
+        if (cartAdapter != null) {
+            cartAdapter.updateCartItems(snapshot.getItems());
+        }
+        updateCartUI();
+        invalidateOptionsMenu();
     }
 
     private void updateCartUI() {
-        if (cartAdapter == null || cartItemList == null) {
-            Log.e(TAG, "updateCartUI: cartAdapter or cartItemList is null. Cannot update UI.");
+        if (cartAdapter == null) {
+            Log.e(TAG, "updateCartUI: cartAdapter is null. Cannot update UI.");
             if (emptyCartTextView != null) {
                 emptyCartTextView.setText("Error displaying cart.");
                 emptyCartTextView.setVisibility(View.VISIBLE);
@@ -222,9 +305,7 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
             return;
         }
 
-        cartAdapter.notifyDataSetChanged();
-
-        if (cartItemList.isEmpty()) {
+        if (cartSnapshot.isEmpty()) {
             updateUIForEmptyCart();
         } else {
             if (cartRecyclerView != null) {
@@ -237,7 +318,7 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
                 bottomSummaryLayout.setVisibility(View.VISIBLE);
             }
             if (checkoutButton != null) {
-                checkoutButton.setEnabled(true);
+                checkoutButton.setEnabled(!checkoutInProgress);
             }
         }
         calculateAndDisplayTotalPrice();
@@ -252,7 +333,7 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
             emptyCartTextView.setVisibility(View.VISIBLE);
         }
         if (totalPriceTextView != null) {
-            totalPriceTextView.setText(String.format(Locale.getDefault(), "Total: $%.2f", 0.0));
+            totalPriceTextView.setText("Total: " + Money.ZERO.format());
         }
         if (checkoutButton != null) {
             checkoutButton.setEnabled(false);
@@ -265,33 +346,86 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
     }
 
     private void calculateAndDisplayTotalPrice() {
-        double totalPrice = 0.0;
-        if (cartItemList != null) {
-            for (CartItem item : cartItemList) {
-                if (item != null) {
-                    totalPrice += item.getItemPrice() * item.getQuantity();
-                }
-            }
-        }
+        long totalCents = cartSnapshot.getSubtotalCents();
+        String totalText = "Total: " + Money.ofCents(totalCents).format();
 
         if (totalPriceTextView != null) {
-            totalPriceTextView.setText(String.format(Locale.getDefault(), "Total: $%.2f", totalPrice));
+            totalPriceTextView.setText(totalText);
         } else {
             Log.e(TAG, "totalPriceTextView is null, cannot display total price.");
         }
-        Log.d(TAG, "Total price calculated and displayed: $" + String.format(Locale.getDefault(), "%.2f", totalPrice));
+        Log.d(TAG, "Total price displayed: " + totalText);
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (cartRepository != null) {
+            cartRepository.removeMutationListener(mutationListener);
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.cart_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        int selectedCount = cartAdapter != null ? cartAdapter.getSelectedIds().size() : 0;
+        menu.findItem(R.id.delete_selected_menu_item).setVisible(selectedCount > 0);
+        menu.findItem(R.id.clear_cart_menu_item).setEnabled(!cartSnapshot.isEmpty());
+        return super.onPrepareOptionsMenu(menu);
     }
 
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        int itemId = item.getItemId();
 
-        if (item.getItemId() == android.R.id.home) {
+        if (itemId == android.R.id.home) {
             finish();
             return true;
+        } else if (itemId == R.id.delete_selected_menu_item) {
+            confirmDeleteSelected();
+            return true;
+        } else if (itemId == R.id.clear_cart_menu_item) {
+            confirmClearCart();
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(selectedCount > 0 ? selectedCount + " selected" : "Shopping Cart");
+        }
+        clearSelectionOnBack.setEnabled(selectedCount > 0);
+        invalidateOptionsMenu();
+    }
+
+    private void confirmDeleteSelected() {
+        Set<String> selectedIds = cartAdapter.getSelectedIds();
+        if (currentUser == null || selectedIds.isEmpty()) {
+            return;
+        }
+        new AlertDialog.Builder(this).setTitle("Delete Items").setMessage("Remove " + selectedIds.size() + " selected items from your cart?").setPositiveButton("Delete", (dialog, which) -> {
+            cartRepository.removeItems(currentUser.getUid(), selectedIds, bulkListener);
+            cartAdapter.clearSelection();
+        }).setNegativeButton("Cancel", null).show();
+    }
+
+    private void confirmClearCart() {
+        if (currentUser == null || cartSnapshot.isEmpty()) {
+            return;
+        }
+        new AlertDialog.Builder(this).setTitle("Clear Cart").setMessage("Remove all " + cartSnapshot.getItems().size() + " items from your cart?").setPositiveButton("Clear", (dialog, which) -> {
+            cartRepository.clearCart(currentUser.getUid(), bulkListener);
+            cartAdapter.clearSelection();
+        }).setNegativeButton("Cancel", null).show();
+    }
+
 
     @Override
     public void onChangeQuantityClicked(CartItem item, int position) {
@@ -326,9 +460,9 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
                 }
 
                 if (newQuantity == 0) {
-                    new AlertDialog.Builder(CartActivity.this).setTitle("Remove Item?").setMessage(item.getItemName() + " quantity is 0. Would you like to remove it from the cart?").setPositiveButton("Yes, Remove", (d, w) -> deleteItemFromCart(item, position)).setNeutralButton("Cancel", null).show();
+                    new AlertDialog.Builder(CartActivity.this).setTitle("Remove Item?").setMessage(item.getItemName() + " quantity is 0. Would you like to remove it from the cart?").setPositiveButton("Yes, Remove", (d, w) -> deleteItemFromCart(item)).setNeutralButton("Cancel", null).show();
                 } else {
-                    updateItemQuantityInFirestore(item, newQuantity, position);
+                    updateItemQuantity(item, newQuantity);
                 }
             } catch (NumberFormatException e) {
                 Toast.makeText(CartActivity.this, "Invalid quantity format.", Toast.LENGTH_SHORT).show();
@@ -348,32 +482,22 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
         Log.d(TAG, "onDeleteItemClicked for: " + item.getItemName() + " at position " + position);
 
         new AlertDialog.Builder(this).setTitle("Delete Item").setMessage("Are you sure you want to remove " + item.getItemName() + " from your cart?").setPositiveButton("Delete", (dialog, which) -> {
-            deleteItemFromCart(item, position);
+            deleteItemFromCart(item);
         }).setNegativeButton("Cancel", null).show();
     }
 
-    private void updateItemQuantityInFirestore(CartItem item, int newQuantity, int position) {
+    private void updateItemQuantity(CartItem item, int newQuantity) {
         if (currentUser == null || item.getItemId() == null) {
             Toast.makeText(this, "Error updating quantity. User or Item ID missing.", Toast.LENGTH_SHORT).show();
             return;
         }
-        String userId = currentUser.getUid();
-        DocumentReference itemRef = db.collection("carts").document(userId).collection("items").document(item.getItemId());
-
-        itemRef.update("quantity", newQuantity).addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "Quantity updated successfully for " + item.getItemName());
-            item.setQuantity(newQuantity);
-            cartItemList.set(position, item);
-            cartAdapter.notifyItemChanged(position);
-            calculateAndDisplayTotalPrice();
-            Toast.makeText(CartActivity.this, item.getItemName() + " quantity updated.", Toast.LENGTH_SHORT).show();
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error updating quantity for " + item.getItemName(), e);
-            Toast.makeText(CartActivity.this, "Failed to update quantity.", Toast.LENGTH_SHORT).show();
-        });
+        CartItem updated = cartRepository.updateQuantity(currentUser.getUid(), item, newQuantity);
+        cartStore.onCartItemChanged(updated);
+        Log.d(TAG, "Quantity updated locally for " + item.getItemName());
+        Toast.makeText(CartActivity.this, item.getItemName() + " quantity updated.", Toast.LENGTH_SHORT).show();
     }
 
-    private void deleteItemFromCart(CartItem item, int position) {
+    private void deleteItemFromCart(CartItem item) {
         if (currentUser == null) {
             Toast.makeText(this, "You must be logged in to modify the cart.", Toast.LENGTH_SHORT).show();
             return;
@@ -387,28 +511,9 @@ public class CartActivity extends AppCompatActivity implements CartAdapter.OnCar
         String userId = currentUser.getUid();
         String itemId = item.getItemId();
 
-        Log.d(TAG, "Attempting to delete item: " + itemId + " for user: " + userId);
-
-        db.collection("carts").document(userId).collection("items").document(itemId).delete().addOnSuccessListener(aVoid -> {
-            Log.d(TAG, "Item " + itemId + " successfully deleted from Firestore.");
-            if (position >= 0 && position < cartItemList.size()) {
-                cartItemList.remove(position);
-                cartAdapter.notifyItemRemoved(position);
-                cartAdapter.notifyItemRangeChanged(position, cartItemList.size());
-
-                updateCartUI();
-                Toast.makeText(CartActivity.this, item.getItemName() + " removed from cart.", Toast.LENGTH_SHORT).show();
-
-                if (cartItemList.isEmpty()) {
-                    updateUIForEmptyCart();
-                }
-            } else {
-                Log.w(TAG, "Item deleted from Firestore, but position " + position + " was out of bounds for local list update. List size: " + cartItemList.size());
-                loadCartItems();
-            }
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error deleting item " + itemId + " from Firestore", e);
-            Toast.makeText(CartActivity.this, "Failed to remove " + item.getItemName() + ". Please try again.", Toast.LENGTH_SHORT).show();
-        });
+        Log.d(TAG, "Removing item: " + itemId + " for user: " + userId);
+        cartRepository.removeItem(userId, itemId);
+        cartStore.onCartItemRemoved(itemId);
+        Toast.makeText(CartActivity.this, item.getItemName() + " removed from cart.", Toast.LENGTH_SHORT).show();
     }
-}
\ No newline at end of file
+}
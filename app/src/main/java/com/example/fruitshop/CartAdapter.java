@@ -10,41 +10,126 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.google.android.material.color.MaterialColors;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder> {
 
-    private final List<CartItem> cartItemList;
+    private static final Object PAYLOAD_PRICE_QUANTITY = new Object();
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final DiffUtil.ItemCallback<CartItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<CartItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull CartItem oldItem, @NonNull CartItem newItem) {
+            return Objects.equals(oldItem.getItemId(), newItem.getItemId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull CartItem oldItem, @NonNull CartItem newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull CartItem oldItem, @NonNull CartItem newItem) {
+            if (Objects.equals(oldItem.getItemName(), newItem.getItemName()) && Objects.equals(oldItem.getImageUrl(), newItem.getImageUrl())) {
+                return PAYLOAD_PRICE_QUANTITY;
+            }
+            return null;
+        }
+    };
+
+    private final AsyncListDiffer<CartItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final Map<String, Long> stableIds = new HashMap<>();
     private final Context context;
     private final OnCartItemInteractionListener listener;
+    private final DrawableResolver drawableResolver;
+    private final Set<String> selectedIds = new HashSet<>();
+    private final int selectedColor;
+    private final int unselectedColor;
 
-    public CartAdapter(Context context, List<CartItem> cartItemList, OnCartItemInteractionListener listener) {
+    public CartAdapter(Context context, OnCartItemInteractionListener listener) {
         this.context = context;
-        this.cartItemList = cartItemList;
         this.listener = listener;
-    }
-
-    public CartAdapter(Context context, List<CartItem> cartItemList) {
-        this.context = context;
-        this.cartItemList = cartItemList;
-        this.listener = null;
+        this.drawableResolver = DrawableResolver.getInstance(context);
+        this.selectedColor = ContextCompat.getColor(context, R.color.cart_row_selected);
+        this.unselectedColor = MaterialColors.getColor(context, com.google.android.material.R.attr.colorSurface,
+                ContextCompat.getColor(context, R.color.light_surface));
+        setHasStableIds(true);
     }
 
     @NonNull
     @Override
     public CartViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.cart_item_row, parent, false);
-        return new CartViewHolder(view);
+        CartViewHolder holder = new CartViewHolder(view);
+
+        holder.button1.setText("Change Qty");
+        holder.button1.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onChangeQuantityClicked(differ.getCurrentList().get(position), position);
+            }
+        });
+
+        holder.button2.setText("Delete");
+        holder.button2.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onDeleteItemClicked(differ.getCurrentList().get(position), position);
+            }
+        });
+
+        holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            toggleSelection(position);
+            return true;
+        });
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (!selectedIds.isEmpty() && position != RecyclerView.NO_POSITION) {
+                toggleSelection(position);
+            }
+        });
+
+        if (holder.detailsTextView != null) {
+            holder.detailsTextView.setVisibility(View.GONE);
+        }
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull CartViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        CartItem cartItem = differ.getCurrentList().get(position);
+        if (payloads.contains(PAYLOAD_PRICE_QUANTITY)) {
+            bindPriceAndQuantity(holder, cartItem);
+        }
+        bindSelection(holder, cartItem);
     }
 
     @Override
     public void onBindViewHolder(@NonNull CartViewHolder holder, int position) {
-        CartItem currentCartItem = cartItemList.get(position);
+        CartItem currentCartItem = differ.getCurrentList().get(position);
 
         if (currentCartItem == null) {
             Log.e("CartAdapter", "currentCartItem is null at position " + position);
@@ -52,79 +137,80 @@ public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder
         }
 
         holder.descriptionTextView.setText(currentCartItem.getItemName());
-        holder.priceTextView.setText(String.format(Locale.getDefault(), "$%.2f", currentCartItem.getItemPrice()));
-        holder.quantityTextView.setText(String.format(Locale.getDefault(), "Qty: %d", currentCartItem.getQuantity()));
-
-        if (holder.detailsTextView != null) {
-            holder.detailsTextView.setVisibility(View.GONE);
-        }
+        bindPriceAndQuantity(holder, currentCartItem);
+        bindSelection(holder, currentCartItem);
 
-        String itemId = currentCartItem.getItemId();
-
-        Log.d("CartAdapter", "Binding item: " + currentCartItem.getItemName() + ", Position: " + position + ", ItemID from CartItem: '" + itemId + "'");
-
-        Context context = holder.imageView.getContext();
+        int drawableId = drawableResolver.resolve(currentCartItem.getItemId());
+        Glide.with(holder.imageView).load(drawableId).placeholder(R.drawable.default_image_placeholder).error(R.drawable.default_image_placeholder).into(holder.imageView);
+    }
 
-        if (itemId != null && !itemId.isEmpty()) {
-            String drawableName = itemId;
+    private void bindSelection(CartViewHolder holder, CartItem cartItem) {
+        if (holder.itemView instanceof CardView) {
+            ((CardView) holder.itemView).setCardBackgroundColor(selectedIds.contains(cartItem.getItemId()) ? selectedColor : unselectedColor);
+        }
+    }
 
-            int imageResourceId = context.getResources().getIdentifier(drawableName, "drawable", context.getPackageName());
+    private void toggleSelection(int position) {
+        String itemId = differ.getCurrentList().get(position).getItemId();
+        if (!selectedIds.remove(itemId)) {
+            selectedIds.add(itemId);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        if (listener != null) {
+            listener.onSelectionChanged(selectedIds.size());
+        }
+    }
 
-            Log.d("CartAdapter", "Attempting to load drawable. Name derived from itemId: '" + drawableName + "'. Found Resource ID: " + imageResourceId);
+    public Set<String> getSelectedIds() {
+        return new HashSet<>(selectedIds);
+    }
 
-            if (imageResourceId != 0) {
-                Glide.with(context).load(imageResourceId).placeholder(R.drawable.default_image_placeholder).error(R.drawable.default_image_placeholder).into(holder.imageView);
-            } else {
-                Log.w("CartAdapter", "Drawable resource not found for name: '" + drawableName + "' (derived from itemId: '" + itemId + "')");
-                Glide.with(context).load(R.drawable.default_image_placeholder).into(holder.imageView);
-            }
-        } else {
-            Log.w("CartAdapter", "ItemID is null or empty for item: " + currentCartItem.getItemName());
-            Glide.with(context).load(R.drawable.default_image_placeholder).into(holder.imageView);
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
         }
+        selectedIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        if (listener != null) {
+            listener.onSelectionChanged(0);
+        }
+    }
 
-        holder.button1.setText("Change Qty");
-        holder.button1.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onChangeQuantityClicked(currentCartItem, holder.getAdapterPosition());
-            }
-        });
-
-        holder.button2.setText("Delete");
-        holder.button2.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onDeleteItemClicked(currentCartItem, holder.getAdapterPosition());
-            }
-        });
+    private static void bindPriceAndQuantity(CartViewHolder holder, CartItem cartItem) {
+        holder.priceTextView.setText(cartItem.getFormattedPrice());
+        holder.quantityTextView.setText(String.format(Locale.getDefault(), "Qty: %d", cartItem.getQuantity()));
     }
 
     @Override
     public int getItemCount() {
-        return cartItemList == null ? 0 : cartItemList.size();
+        return differ.getCurrentList().size();
     }
 
-    public void updateCartItems(List<CartItem> newCartItems) {
-        this.cartItemList.clear();
-        if (newCartItems != null) {
-            this.cartItemList.addAll(newCartItems);
+    @Override
+    public long getItemId(int position) {
+        String itemId = differ.getCurrentList().get(position).getItemId();
+        Long stableId = stableIds.get(itemId);
+        if (stableId == null) {
+            stableId = (long) stableIds.size();
+            stableIds.put(itemId, stableId);
         }
-        notifyDataSetChanged();
+        return stableId;
     }
 
-    public double calculateTotalPrice() {
-        double totalPrice = 0;
-        if (cartItemList != null) {
-            for (CartItem item : cartItemList) {
-                totalPrice += item.getItemPrice() * item.getQuantity();
-            }
-        }
-        return totalPrice;
+    public void updateCartItems(List<CartItem> newCartItems) {
+        differ.submitList(newCartItems);
+    }
+
+    public List<CartItem> getCurrentItems() {
+        return differ.getCurrentList();
     }
 
     public interface OnCartItemInteractionListener {
         void onChangeQuantityClicked(CartItem item, int position);
 
         void onDeleteItemClicked(CartItem item, int position);
+
+        void onSelectionChanged(int selectedCount);
     }
 
     static class CartViewHolder extends RecyclerView.ViewHolder {
@@ -147,4 +233,4 @@ public class CartAdapter extends RecyclerView.Adapter<CartAdapter.CartViewHolder
             button2 = itemView.findViewById(R.id.cartItemButton2);
         }
     }
-}
\ No newline at end of file
+}
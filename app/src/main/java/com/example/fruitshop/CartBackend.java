@@ -0,0 +1,16 @@
+package com.example.fruitshop;
+
+import java.util.List;
+
+public interface CartBackend {
+
+    void apply(List<CartOperation> operations, Callback callback);
+
+    interface Callback {
+        void onSuccess();
+
+        void onFailure(Exception e);
+
+        void onRejected(Exception e);
+    }
+}
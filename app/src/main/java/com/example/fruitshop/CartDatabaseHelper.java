@@ -0,0 +1,70 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+public class CartDatabaseHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "cart.db";
+    private static final int DATABASE_VERSION = 3;
+
+    static final String TABLE_ITEMS = "cart_items";
+    static final String TABLE_OUTBOX = "cart_outbox";
+
+    public CartDatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    CartDatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ITEMS + " ("
+                + "user_id TEXT NOT NULL, "
+                + "item_id TEXT NOT NULL, "
+                + "item_name TEXT, "
+                + "item_price_cents INTEGER NOT NULL DEFAULT 0, "
+                + "quantity INTEGER NOT NULL, "
+                + "image_url TEXT, "
+                + "added_at INTEGER NOT NULL, "
+                + "PRIMARY KEY (user_id, item_id))");
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "op_id TEXT NOT NULL UNIQUE, "
+                + "op_type TEXT NOT NULL, "
+                + "user_id TEXT NOT NULL, "
+                + "item_id TEXT NOT NULL, "
+                + "item_name TEXT, "
+                + "item_price_cents INTEGER NOT NULL DEFAULT 0, "
+                + "quantity INTEGER NOT NULL DEFAULT 0, "
+                + "image_url TEXT, "
+                + "added_at INTEGER NOT NULL DEFAULT 0, "
+                + "base_quantity INTEGER NOT NULL DEFAULT 0, "
+                + "base_price_cents INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_outbox_item ON " + TABLE_OUTBOX + " (user_id, item_id)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Version 1 stored prices as REAL dollars; keep the old column and copy into cents.
+            for (String table : new String[]{TABLE_ITEMS, TABLE_OUTBOX}) {
+                db.execSQL("ALTER TABLE " + table + " ADD COLUMN item_price_cents INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("UPDATE " + table + " SET item_price_cents = CAST(ROUND(item_price * 100) AS INTEGER)");
+            }
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN base_quantity INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN base_price_cents INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+}
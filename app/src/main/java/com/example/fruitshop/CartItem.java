@@ -1,16 +1,22 @@
 package com.example.fruitshop;
 
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.IgnoreExtraProperties;
 import com.google.firebase.firestore.PropertyName;
 import com.google.firebase.firestore.ServerTimestamp;
 
 import java.util.Date;
+import java.util.Objects;
 
+@IgnoreExtraProperties
 public class CartItem {
 
     private String itemId;
     private String itemName;
-    private double itemPrice;
+    private Money price = Money.ZERO;
     private long quantity;
+    private String imageUrl;
+    private boolean hasPriceCents;
 
     @ServerTimestamp
     private Date timestamp;
@@ -18,10 +24,10 @@ public class CartItem {
     public CartItem() {
     }
 
-    public CartItem(String itemId, String itemName, double itemPrice, long quantity) {
+    public CartItem(String itemId, String itemName, Money price, long quantity) {
         this.itemId = itemId;
         this.itemName = itemName;
-        this.itemPrice = itemPrice;
+        this.price = price;
         this.quantity = quantity;
     }
 
@@ -41,12 +47,39 @@ public class CartItem {
         this.itemName = itemName;
     }
 
+    @Exclude
+    public Money getPrice() {
+        return price;
+    }
+
+    @Exclude
+    public void setPrice(Money price) {
+        this.price = price;
+    }
+
+    // Older cart documents only carry itemPrice as a double of dollars; newer ones also carry
+    // itemPriceCents, which wins when both are present.
+    @PropertyName("itemPrice")
     public double getItemPrice() {
-        return itemPrice;
+        return price.toDouble();
     }
 
+    @PropertyName("itemPrice")
     public void setItemPrice(double itemPrice) {
-        this.itemPrice = itemPrice;
+        if (!hasPriceCents) {
+            this.price = Money.fromDouble(itemPrice);
+        }
+    }
+
+    @PropertyName("itemPriceCents")
+    public long getItemPriceCents() {
+        return price.getCents();
+    }
+
+    @PropertyName("itemPriceCents")
+    public void setItemPriceCents(long itemPriceCents) {
+        this.price = Money.ofCents(itemPriceCents);
+        this.hasPriceCents = true;
     }
 
     public long getQuantity() {
@@ -57,6 +90,13 @@ public class CartItem {
         this.quantity = quantity;
     }
 
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
 
     @PropertyName("timestamp")
     public Date getTimestamp() {
@@ -68,15 +108,28 @@ public class CartItem {
         this.timestamp = timestamp;
     }
 
+    public boolean hasSameContent(CartItem other) {
+        return other != null
+                && quantity == other.quantity
+                && price.equals(other.price)
+                && Objects.equals(itemId, other.itemId)
+                && Objects.equals(itemName, other.itemName)
+                && Objects.equals(imageUrl, other.imageUrl)
+                && Objects.equals(timestamp, other.timestamp);
+    }
+
+    @Exclude
     public String getFormattedPrice() {
-        return String.format("$%.2f", itemPrice);
+        return price.format();
     }
 
-    public double getTotalItemPrice() {
-        return itemPrice * quantity;
+    @Exclude
+    public Money getTotalItemPrice() {
+        return price.times(quantity);
     }
 
+    @Exclude
     public String getFormattedTotalItemPrice() {
-        return String.format("$%.2f", getTotalItemPrice());
+        return getTotalItemPrice().format();
     }
 }
\ No newline at end of file
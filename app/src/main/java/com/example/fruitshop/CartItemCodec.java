@@ -0,0 +1,77 @@
+package com.example.fruitshop;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes carts/{uid}/items documents field by field, without Firestore's reflective
+ * CustomClassMapper. Decoding matches {@code toObject(CartItem.class)}: itemPriceCents wins over the
+ * legacy itemPrice, and a pending server timestamp reads as null.
+ */
+public final class CartItemCodec {
+
+    static final String ITEM_ID = "itemId";
+    static final String ITEM_NAME = "itemName";
+    static final String ITEM_PRICE = "itemPrice";
+    static final String ITEM_PRICE_CENTS = "itemPriceCents";
+    static final String QUANTITY = "quantity";
+    static final String IMAGE_URL = "imageUrl";
+    static final String TIMESTAMP = "timestamp";
+    static final String LAST_OP_ID = "lastOpId";
+
+    // Room for every field above without rehashing at the default load factor.
+    private static final int DOCUMENT_CAPACITY = 11;
+
+    private CartItemCodec() {
+    }
+
+    public static CartItem decode(DocumentSnapshot document) {
+        CartItem cartItem = new CartItem();
+        cartItem.setItemId(document.getString(ITEM_ID));
+        cartItem.setItemName(document.getString(ITEM_NAME));
+        Long priceCents = document.getLong(ITEM_PRICE_CENTS);
+        if (priceCents != null) {
+            cartItem.setItemPriceCents(priceCents);
+        } else {
+            Double price = document.getDouble(ITEM_PRICE);
+            if (price != null) {
+                cartItem.setItemPrice(price);
+            }
+        }
+        Long quantity = document.getLong(QUANTITY);
+        if (quantity != null) {
+            cartItem.setQuantity(quantity);
+        }
+        cartItem.setImageUrl(document.getString(IMAGE_URL));
+        cartItem.setTimestamp(document.getDate(TIMESTAMP));
+        return cartItem;
+    }
+
+    /**
+     * Fields of a line written by the operation with the given resulting quantity. The timestamp is
+     * the server's and only written when the line is created, so lines keep the time they were added.
+     */
+    public static Map<String, Object> encode(CartOperation operation, long quantity, boolean create) {
+        Map<String, Object> data = new HashMap<>(DOCUMENT_CAPACITY);
+        data.put(ITEM_ID, operation.getItemId());
+        data.put(ITEM_NAME, operation.getItemName());
+        data.put(ITEM_PRICE, operation.getItemPriceCents() / 100.0);
+        data.put(ITEM_PRICE_CENTS, operation.getItemPriceCents());
+        data.put(QUANTITY, quantity);
+        if (create) {
+            data.put(TIMESTAMP, FieldValue.serverTimestamp());
+        }
+        data.put(LAST_OP_ID, operation.getOpId());
+        putImageUrl(data, operation.getImageUrl());
+        return data;
+    }
+
+    private static void putImageUrl(Map<String, Object> data, String imageUrl) {
+        if (imageUrl != null && !imageUrl.isEmpty()) {
+            data.put(IMAGE_URL, imageUrl);
+        }
+    }
+}
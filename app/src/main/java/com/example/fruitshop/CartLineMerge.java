@@ -0,0 +1,91 @@
+package com.example.fruitshop;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Applies one batch of outbox operations to the lines the server holds, as read in the
+ * transaction that commits the batch. An operation whose id is already the line's lastOpId was
+ * applied by an earlier attempt and changes nothing, and the summary deltas come from what the
+ * stored lines actually become rather than from the client's idea of them. An upsert whose base
+ * no longer matches the stored quantity, because another device changed the line since, adds its
+ * own change on top of the stored quantity instead of overwriting it, so concurrent adds are kept.
+ */
+final class CartLineMerge {
+
+    static final class Line {
+        final long quantity;
+        final long priceCents;
+        final String lastOpId;
+
+        Line(long quantity, long priceCents, String lastOpId) {
+            this.quantity = quantity;
+            this.priceCents = priceCents;
+            this.lastOpId = lastOpId;
+        }
+    }
+
+    private final Map<String, Line> lines = new HashMap<>();
+    private final Map<String, long[]> summaryDeltas = new LinkedHashMap<>();
+
+    /** Records what the server holds for a line; a null line is absent. */
+    void putStored(String userId, String itemId, Line line) {
+        lines.put(key(userId, itemId), line);
+    }
+
+    boolean hasStored(String userId, String itemId) {
+        return lines.containsKey(key(userId, itemId));
+    }
+
+    Line get(String userId, String itemId) {
+        return lines.get(key(userId, itemId));
+    }
+
+    /**
+     * Returns the line the operation leaves, or null when it leaves none. The stored line itself
+     * comes back when the operation changes nothing, so callers write only on a new reference.
+     */
+    Line apply(CartOperation operation) {
+        String key = key(operation.getUserId(), operation.getItemId());
+        Line stored = lines.get(key);
+        if (stored != null && operation.getOpId().equals(stored.lastOpId)) {
+            return stored;
+        }
+        long quantity = resultingQuantity(operation, stored != null ? stored.quantity : 0);
+        if (quantity <= 0 && stored == null) {
+            return null;
+        }
+        Line result = quantity > 0 ? new Line(quantity, operation.getItemPriceCents(), operation.getOpId()) : null;
+        lines.put(key, result);
+
+        long[] delta = summaryDeltas.get(operation.getUserId());
+        if (delta == null) {
+            delta = new long[3];
+            summaryDeltas.put(operation.getUserId(), delta);
+        }
+        delta[0] += (result != null ? 1 : 0) - (stored != null ? 1 : 0);
+        delta[1] += (result != null ? result.quantity : 0) - (stored != null ? stored.quantity : 0);
+        delta[2] += (result != null ? result.quantity * result.priceCents : 0) - (stored != null ? stored.quantity * stored.priceCents : 0);
+        return result;
+    }
+
+    private static long resultingQuantity(CartOperation operation, long storedQuantity) {
+        if (operation.getType() == CartOperation.Type.DELETE) {
+            return 0;
+        }
+        if (storedQuantity == operation.getBaseQuantity()) {
+            return operation.getQuantity();
+        }
+        return storedQuantity + operation.getQuantity() - operation.getBaseQuantity();
+    }
+
+    /** Line, unit and subtotal deltas of every user whose lines changed. */
+    Map<String, long[]> getSummaryDeltas() {
+        return summaryDeltas;
+    }
+
+    private static String key(String userId, String itemId) {
+        return userId + "/" + itemId;
+    }
+}
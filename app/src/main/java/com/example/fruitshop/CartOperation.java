@@ -0,0 +1,119 @@
+package com.example.fruitshop;
+
+import java.util.UUID;
+
+/**
+ * A cart mutation waiting in the outbox. Operations carry the full resulting state of the
+ * line rather than a delta, plus the line's state before the mutation (the base). The backend
+ * writes each operation's id to the line as lastOpId and skips operations it finds there, so a
+ * batch replayed after an ambiguous failure is not applied twice.
+ */
+public class CartOperation {
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    private final String opId;
+    private final Type type;
+    private final String userId;
+    private final String itemId;
+    private final String itemName;
+    private final long itemPriceCents;
+    private final long quantity;
+    private final String imageUrl;
+    private final long addedAt;
+    private final long baseQuantity;
+    private final long basePriceCents;
+
+    public CartOperation(String opId, Type type, String userId, String itemId, String itemName, long itemPriceCents, long quantity, String imageUrl, long addedAt) {
+        this(opId, type, userId, itemId, itemName, itemPriceCents, quantity, imageUrl, addedAt, 0, 0);
+    }
+
+    public CartOperation(String opId, Type type, String userId, String itemId, String itemName, long itemPriceCents, long quantity, String imageUrl, long addedAt, long baseQuantity, long basePriceCents) {
+        this.opId = opId;
+        this.type = type;
+        this.userId = userId;
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.itemPriceCents = itemPriceCents;
+        this.quantity = quantity;
+        this.imageUrl = imageUrl;
+        this.addedAt = addedAt;
+        this.baseQuantity = baseQuantity;
+        this.basePriceCents = basePriceCents;
+    }
+
+    public static CartOperation upsert(String userId, String itemId, String itemName, long itemPriceCents, long quantity, String imageUrl, long addedAt) {
+        return new CartOperation(UUID.randomUUID().toString(), Type.UPSERT, userId, itemId, itemName, itemPriceCents, quantity, imageUrl, addedAt);
+    }
+
+    public static CartOperation delete(String userId, String itemId) {
+        return new CartOperation(UUID.randomUUID().toString(), Type.DELETE, userId, itemId, null, 0, 0, null, 0);
+    }
+
+    public CartOperation withBase(long baseQuantity, long basePriceCents) {
+        return new CartOperation(opId, type, userId, itemId, itemName, itemPriceCents, quantity, imageUrl, addedAt, baseQuantity, basePriceCents);
+    }
+
+    public CartOperation withBase(CartItem base) {
+        return base == null ? withBase(0, 0) : withBase(base.getQuantity(), base.getPrice().getCents());
+    }
+
+    /**
+     * This operation restated for a line that an order has just taken off the server: the ordered
+     * units are gone and so is the line, so the result is based on an empty line. Returns null when
+     * nothing is left to send.
+     */
+    public CartOperation afterOrdered(long orderedQuantity) {
+        if (type == Type.DELETE || quantity <= orderedQuantity) {
+            return null;
+        }
+        return new CartOperation(opId, type, userId, itemId, itemName, itemPriceCents, quantity - orderedQuantity, imageUrl, addedAt, 0, 0);
+    }
+
+    public String getOpId() {
+        return opId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public long getItemPriceCents() {
+        return itemPriceCents;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public long getAddedAt() {
+        return addedAt;
+    }
+
+    public long getBaseQuantity() {
+        return baseQuantity;
+    }
+
+    public long getBasePriceCents() {
+        return basePriceCents;
+    }
+}
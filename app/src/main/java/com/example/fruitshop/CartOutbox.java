@@ -0,0 +1,29 @@
+package com.example.fruitshop;
+
+import java.util.List;
+
+/**
+ * Ordered queue of cart operations that still have to reach the backend. Operations returned
+ * by {@link #peek(int)} stay in the queue until they are removed. Once peeked they are never
+ * superseded by later operations for the same line, even after {@link #release()}, because a
+ * batch that failed may still have been applied.
+ */
+public interface CartOutbox {
+
+    void enqueue(CartOperation operation);
+
+    void enqueueAll(List<CartOperation> operations);
+
+    List<CartOperation> peek(int maxCount);
+
+    void remove(List<CartOperation> operations);
+
+    void release();
+
+    boolean hasPending(String userId, String itemId);
+
+    /** The newest queued operation for the line, or null. */
+    CartOperation findPending(String userId, String itemId);
+
+    int size();
+}
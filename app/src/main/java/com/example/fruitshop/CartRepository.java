@@ -0,0 +1,818 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide cart backed by SQLite. Reads and mutations go to the local store first; every
+ * mutation is also queued in the outbox, which CartSyncer replays to carts/{uid}/items in the
+ * background. Remote changes are merged into the local store for lines without pending
+ * operations. Mutations the backend rejects are rolled back to the last confirmed state of
+ * the line. Firestore snapshots are mapped on a dedicated background executor and only the
+ * finished changes are posted; listener callbacks are delivered on the main thread.
+ * Checkout waits for the outbox to drain, then places the order under an idempotency key that is
+ * kept on disk until the order is confirmed, so a retry after a lost response cannot order twice.
+ * Cart edits made while an order is being placed are held in the outbox and rebased on it.
+ */
+public class CartRepository {
+
+    private static final String TAG = "CartRepository";
+    private static final long SYNC_DELAY_MS = 750;
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+    private static final String CHECKOUT_PREFS = "checkout";
+    private static final String PENDING_ORDER_PREFIX = "pending_order_";
+
+    private static CartRepository instance;
+
+    private final FirebaseFirestore db;
+    private final LocalCartStore localStore;
+    private final CartOutbox outbox;
+    private final CartSyncer syncer;
+    private final CheckoutService checkoutService;
+    private final CatalogPrices catalogPrices;
+    private final SharedPreferences checkoutPrefs;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mappingExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable syncRunnable = this::flush;
+    private final List<CartListener> listeners = new ArrayList<>();
+    private final List<MutationListener> mutationListeners = new ArrayList<>();
+    // Last server-confirmed state of each line with unacknowledged mutations; null means absent.
+    private final Map<String, CartItem> confirmedLines = new HashMap<>();
+    // Bulk operations still waiting for the backend; only touched on the disk executor.
+    private final List<BulkJob> bulkJobs = new ArrayList<>();
+    // Checkouts waiting for the outbox to drain; only touched on the disk executor.
+    private final List<PendingCheckout> pendingCheckouts = new ArrayList<>();
+    // Remote changes to lines with pending mutations, held until those are acknowledged, since the
+    // backend may have merged them with another device's edits; only touched on the disk executor.
+    private final Map<String, DeferredLine> deferredLines = new HashMap<>();
+
+    private String observedUserId;
+    private ListenerRegistration remoteListener;
+    private volatile long retryDelayMs = SYNC_DELAY_MS;
+    // Test seam: run on the mapping executor before each remote snapshot is mapped.
+    private volatile Runnable mappingObserver;
+
+    public static synchronized CartRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new CartRepository(context.getApplicationContext());
+            instance.flush();
+        }
+        return instance;
+    }
+
+    private CartRepository(Context context) {
+        CartDatabaseHelper dbHelper = new CartDatabaseHelper(context);
+        this.db = FirebaseFirestore.getInstance();
+        this.localStore = new LocalCartStore(dbHelper);
+        this.outbox = new SqliteCartOutbox(dbHelper);
+        this.checkoutService = new CheckoutService(db, InventoryCounter.getInstance(), mappingExecutor);
+        this.catalogPrices = new CatalogPrices(db, mappingExecutor);
+        this.checkoutPrefs = context.getSharedPreferences(CHECKOUT_PREFS, Context.MODE_PRIVATE);
+        this.syncer = new CartSyncer(outbox, new FirestoreCartBackend(db, mappingExecutor), diskExecutor, new CartSyncer.Listener() {
+            @Override
+            public void onOperationsSynced(List<CartOperation> operations) {
+                Log.d(TAG, "Synced " + operations.size() + " cart operations.");
+                retryDelayMs = SYNC_DELAY_MS;
+                reconcileAcknowledged(operations);
+                advanceBulkJobs(operations, false);
+            }
+
+            @Override
+            public void onSyncIdle() {
+                startPendingCheckouts();
+            }
+
+            @Override
+            public void onSyncFailed(Exception e) {
+                Log.w(TAG, "Cart sync failed, retrying in " + retryDelayMs + " ms.", e);
+                failPendingCheckouts(e);
+                mainHandler.postDelayed(syncRunnable, retryDelayMs);
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+            }
+
+            @Override
+            public void onOperationsRejected(List<CartOperation> operations, Exception e) {
+                Log.e(TAG, "Backend rejected " + operations.size() + " cart operations, rolling back.", e);
+                rollBackRejected(operations, e);
+                advanceBulkJobs(operations, true);
+            }
+        });
+    }
+
+    public void observe(String userId, CartListener listener) {
+        listeners.add(listener);
+        if (!userId.equals(observedUserId)) {
+            stopRemoteListener();
+            observedUserId = userId;
+        }
+        if (remoteListener == null) {
+            startRemoteListener(userId);
+        }
+
+        diskExecutor.execute(() -> {
+            List<CartItem> items = localStore.loadItems(userId);
+            mainHandler.post(() -> {
+                if (listeners.contains(listener) && userId.equals(observedUserId)) {
+                    listener.onCartLoaded(items);
+                }
+            });
+        });
+    }
+
+    public void removeListener(CartListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            stopRemoteListener();
+        }
+    }
+
+    public void addMutationListener(MutationListener listener) {
+        mutationListeners.add(listener);
+    }
+
+    public void removeMutationListener(MutationListener listener) {
+        mutationListeners.remove(listener);
+    }
+
+    public void addToCart(String userId, Item item, int quantity) {
+        Money price = item.getPrice();
+        diskExecutor.execute(() -> {
+            CartItem existing = localStore.findItem(userId, item.getItemId());
+            CartItem updated = new CartItem(item.getItemId(), item.getDescription(), price, quantity);
+            updated.setImageUrl(item.getImageUrl());
+            if (existing != null) {
+                updated.setQuantity(existing.getQuantity() + quantity);
+                updated.setTimestamp(existing.getTimestamp());
+            } else {
+                updated.setTimestamp(new Date());
+            }
+            writeLocally(userId, updated);
+        });
+        scheduleSync();
+    }
+
+    public CartItem updateQuantity(String userId, CartItem item, long quantity) {
+        CartItem updated = new CartItem(item.getItemId(), item.getItemName(), item.getPrice(), quantity);
+        updated.setImageUrl(item.getImageUrl());
+        updated.setTimestamp(item.getTimestamp() != null ? item.getTimestamp() : new Date());
+        diskExecutor.execute(() -> writeLocally(userId, updated));
+        scheduleSync();
+        return updated;
+    }
+
+    public void removeItem(String userId, String itemId) {
+        diskExecutor.execute(() -> {
+            rememberConfirmed(userId, itemId);
+            CartItem previous = localStore.findItem(userId, itemId);
+            localStore.deleteItem(userId, itemId);
+            outbox.enqueue(CartOperation.delete(userId, itemId).withBase(previous));
+            postRemoved(userId, itemId);
+        });
+        scheduleSync();
+    }
+
+    /** Removes every line of the cart; see {@link #removeItems}. */
+    public void clearCart(String userId, BulkListener listener) {
+        diskExecutor.execute(() -> {
+            List<String> itemIds = new ArrayList<>();
+            for (CartItem item : localStore.loadItems(userId)) {
+                itemIds.add(item.getItemId());
+            }
+            removeLocally(userId, itemIds, listener);
+        });
+    }
+
+    /**
+     * Removes many lines in one local transaction and posts a single cart reload. The deletes reach
+     * the backend in chunked batches; the listener gets progress as each chunk is acknowledged.
+     */
+    public void removeItems(String userId, Collection<String> itemIds, BulkListener listener) {
+        List<String> ids = new ArrayList<>(itemIds);
+        diskExecutor.execute(() -> removeLocally(userId, ids, listener));
+    }
+
+    /** Adds the given lines on top of the cart, as when re-adding a previous order. */
+    public void addItems(String userId, List<CartItem> lines, BulkListener listener) {
+        List<CartItem> toAdd = new ArrayList<>(lines);
+        diskExecutor.execute(() -> {
+            Map<String, CartItem> current = currentLines(userId);
+            long now = System.currentTimeMillis();
+            List<CartItem> updatedLines = new ArrayList<>(toAdd.size());
+            List<CartOperation> operations = new ArrayList<>(toAdd.size());
+            for (CartItem line : toAdd) {
+                CartItem existing = current.get(line.getItemId());
+                CartItem updated = new CartItem(line.getItemId(), line.getItemName(), line.getPrice(), line.getQuantity());
+                updated.setImageUrl(line.getImageUrl());
+                if (existing != null) {
+                    updated.setQuantity(existing.getQuantity() + line.getQuantity());
+                    updated.setTimestamp(existing.getTimestamp());
+                } else {
+                    updated.setTimestamp(new Date(now++));
+                }
+                rememberConfirmed(userId, line.getItemId(), existing);
+                current.put(updated.getItemId(), updated);
+                updatedLines.add(updated);
+                operations.add(CartOperation.upsert(userId, updated.getItemId(), updated.getItemName(), updated.getPrice().getCents(), updated.getQuantity(), updated.getImageUrl(), updated.getTimestamp().getTime()).withBase(existing));
+            }
+            localStore.putItems(userId, updatedLines);
+            applyBulk(userId, operations, listener);
+        });
+    }
+
+    private void removeLocally(String userId, List<String> itemIds, BulkListener listener) {
+        Map<String, CartItem> current = currentLines(userId);
+        List<String> removedIds = new ArrayList<>(itemIds.size());
+        List<CartOperation> operations = new ArrayList<>(itemIds.size());
+        for (String itemId : itemIds) {
+            CartItem existing = current.remove(itemId);
+            if (existing == null) {
+                continue;
+            }
+            rememberConfirmed(userId, itemId, existing);
+            removedIds.add(itemId);
+            operations.add(CartOperation.delete(userId, itemId).withBase(existing));
+        }
+        localStore.deleteItems(userId, removedIds);
+        applyBulk(userId, operations, listener);
+    }
+
+    private Map<String, CartItem> currentLines(String userId) {
+        Map<String, CartItem> lines = new HashMap<>();
+        for (CartItem item : localStore.loadItems(userId)) {
+            lines.put(item.getItemId(), item);
+        }
+        return lines;
+    }
+
+    private void applyBulk(String userId, List<CartOperation> operations, BulkListener listener) {
+        outbox.enqueueAll(operations);
+        if (listener != null) {
+            BulkJob job = new BulkJob(userId, operations, listener);
+            if (job.remaining.isEmpty()) {
+                mainHandler.post(() -> listener.onBulkComplete(0, 0));
+            } else {
+                bulkJobs.add(job);
+            }
+        }
+        postReload(userId);
+        flush();
+    }
+
+    private void advanceBulkJobs(List<CartOperation> operations, boolean rejected) {
+        for (int i = bulkJobs.size() - 1; i >= 0; i--) {
+            BulkJob job = bulkJobs.get(i);
+            int before = job.remaining.size();
+            for (CartOperation operation : operations) {
+                if (operation.getUserId().equals(job.userId) && job.remaining.remove(operation.getItemId()) && rejected) {
+                    job.failed++;
+                }
+            }
+            if (job.remaining.size() == before) {
+                continue;
+            }
+            int done = job.total - job.remaining.size();
+            int failed = job.failed;
+            if (job.remaining.isEmpty()) {
+                bulkJobs.remove(i);
+                mainHandler.post(() -> job.listener.onBulkComplete(job.total, failed));
+            } else {
+                mainHandler.post(() -> job.listener.onBulkProgress(done, job.total));
+            }
+        }
+    }
+
+    private void postReload(String userId) {
+        List<CartItem> items = localStore.loadItems(userId);
+        mainHandler.post(() -> {
+            if (userId.equals(observedUserId)) {
+                for (CartListener listener : new ArrayList<>(listeners)) {
+                    listener.onCartLoaded(items);
+                }
+            }
+        });
+    }
+
+    /**
+     * Places an order for the user's cart once every queued cart change has reached the backend.
+     * The cart that gets ordered is the local one at that point.
+     */
+    public void checkout(String userId, CheckoutListener listener) {
+        diskExecutor.execute(() -> {
+            pendingCheckouts.add(new PendingCheckout(userId, listener));
+            flush();
+        });
+    }
+
+    private void startPendingCheckouts() {
+        if (pendingCheckouts.isEmpty()) {
+            return;
+        }
+        List<PendingCheckout> ready = new ArrayList<>(pendingCheckouts);
+        pendingCheckouts.clear();
+        for (PendingCheckout checkout : ready) {
+            // Edits made from here on are held back until the outcome is known; see rebaseOnOrder.
+            syncer.pause();
+            String orderId = pendingOrderId(checkout.userId);
+            List<CartItem> lines = localStore.loadItems(checkout.userId);
+            Log.d(TAG, "Checking out " + lines.size() + " lines for " + checkout.userId + " as order " + orderId);
+            checkoutService.placeOrder(orderId, checkout.userId, lines).addOnCompleteListener(diskExecutor, task -> finishCheckout(checkout, orderId, lines, task));
+        }
+    }
+
+    private void failPendingCheckouts(Exception e) {
+        for (PendingCheckout checkout : pendingCheckouts) {
+            mainHandler.post(() -> checkout.listener.onCheckoutFailed(e));
+        }
+        pendingCheckouts.clear();
+    }
+
+    private void finishCheckout(PendingCheckout checkout, String orderId, List<CartItem> lines, Task<CheckoutResult> task) {
+        if (!task.isSuccessful()) {
+            Log.w(TAG, "Checkout " + orderId + " failed; the key is kept for the retry.", task.getException());
+            syncer.resume();
+            mainHandler.post(() -> checkout.listener.onCheckoutFailed(task.getException()));
+            return;
+        }
+        CheckoutResult result = task.getResult();
+        String userId = checkout.userId;
+        switch (result.getStatus()) {
+            case PLACED:
+                rebaseOnOrder(userId, lines);
+                clearPendingOrderId(userId, orderId);
+                break;
+            case ALREADY_PLACED:
+                // The lines were cleared by the earlier commit; the remote listener removes them locally.
+                clearPendingOrderId(userId, orderId);
+                break;
+            case ITEMS_CHANGED:
+                repriceLocally(userId, result.getPriceChanges());
+                break;
+            default:
+                break;
+        }
+        syncer.resume();
+        mainHandler.post(() -> checkout.listener.onCheckoutFinished(result));
+    }
+
+    /**
+     * Removes the ordered lines locally. Lines edited while the order was placed still have an
+     * operation queued against the line the order just deleted on the server; it is restated without
+     * the ordered units and on an empty base, or dropped when nothing is left, so it cannot bring the
+     * ordered units back or skew the summary.
+     */
+    private void rebaseOnOrder(String userId, List<CartItem> orderedLines) {
+        List<String> removedIds = new ArrayList<>(orderedLines.size());
+        List<CartItem> remainingLines = new ArrayList<>();
+        List<CartOperation> superseded = new ArrayList<>();
+        List<CartOperation> rebased = new ArrayList<>();
+        for (CartItem line : orderedLines) {
+            String itemId = line.getItemId();
+            CartOperation pending = outbox.findPending(userId, itemId);
+            if (pending == null) {
+                removedIds.add(itemId);
+                continue;
+            }
+            superseded.add(pending);
+            CartOperation remaining = pending.afterOrdered(line.getQuantity());
+            if (remaining == null) {
+                removedIds.add(itemId);
+                confirmedLines.remove(lineKey(userId, itemId));
+            } else {
+                rebased.add(remaining);
+                remainingLines.add(lineOf(remaining));
+                confirmedLines.put(lineKey(userId, itemId), null);
+            }
+        }
+        if (!superseded.isEmpty()) {
+            Log.d(TAG, "Rebased " + rebased.size() + " and dropped " + (superseded.size() - rebased.size()) + " queued edits on ordered lines for " + userId);
+        }
+        outbox.remove(superseded);
+        outbox.enqueueAll(rebased);
+        localStore.deleteItems(userId, removedIds);
+        localStore.putItems(userId, remainingLines);
+        postReload(userId);
+    }
+
+    /**
+     * Brings the stored line prices up to date with the catalog: one batched read for the whole
+     * cart, then every changed line is rewritten in one local transaction and synced as one batch.
+     * The listener hears about the changes so they can be shown before checkout.
+     */
+    public void reprice(String userId, RepriceListener listener) {
+        diskExecutor.execute(() -> {
+            List<CartItem> lines = localStore.loadItems(userId);
+            if (lines.isEmpty()) {
+                return;
+            }
+            List<String> itemIds = new ArrayList<>(lines.size());
+            for (CartItem line : lines) {
+                itemIds.add(line.getItemId());
+            }
+            catalogPrices.fetch(itemIds).addOnCompleteListener(diskExecutor, task -> {
+                if (!task.isSuccessful()) {
+                    Log.w(TAG, "Could not reprice the cart of " + userId, task.getException());
+                    return;
+                }
+                CheckoutResult changed = CheckoutValidator.revalidate(lines, task.getResult(), Collections.emptyMap());
+                if (changed == null) {
+                    Log.d(TAG, "All " + lines.size() + " cart prices are current.");
+                    return;
+                }
+                repriceLocally(userId, changed.getPriceChanges());
+                mainHandler.post(() -> listener.onCartRepriced(changed.getPriceChanges(), changed.getUnavailableItemIds()));
+            });
+        });
+    }
+
+    // Lines edited since the prices were read keep their pending change; the next repricing catches them.
+    private void repriceLocally(String userId, List<PriceChange> priceChanges) {
+        Map<String, CartItem> current = currentLines(userId);
+        List<CartItem> repricedLines = new ArrayList<>(priceChanges.size());
+        List<CartOperation> operations = new ArrayList<>(priceChanges.size());
+        for (PriceChange change : priceChanges) {
+            CartItem existing = current.get(change.getItemId());
+            if (existing == null || outbox.hasPending(userId, change.getItemId()) || !existing.getPrice().equals(change.getOldPrice())) {
+                continue;
+            }
+            CartItem repriced = new CartItem(existing.getItemId(), existing.getItemName(), change.getNewPrice(), existing.getQuantity());
+            repriced.setImageUrl(existing.getImageUrl());
+            repriced.setTimestamp(existing.getTimestamp() != null ? existing.getTimestamp() : new Date());
+            rememberConfirmed(userId, existing.getItemId(), existing);
+            repricedLines.add(repriced);
+            operations.add(CartOperation.upsert(userId, repriced.getItemId(), repriced.getItemName(), repriced.getPrice().getCents(), repriced.getQuantity(), repriced.getImageUrl(), repriced.getTimestamp().getTime()).withBase(existing));
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+        Log.d(TAG, "Repricing " + operations.size() + " cart lines for " + userId);
+        localStore.putItems(userId, repricedLines);
+        applyBulk(userId, operations, null);
+    }
+
+    private String pendingOrderId(String userId) {
+        String orderId = checkoutPrefs.getString(PENDING_ORDER_PREFIX + userId, null);
+        if (orderId == null) {
+            orderId = UUID.randomUUID().toString();
+            checkoutPrefs.edit().putString(PENDING_ORDER_PREFIX + userId, orderId).commit();
+        }
+        return orderId;
+    }
+
+    private void clearPendingOrderId(String userId, String orderId) {
+        if (orderId.equals(checkoutPrefs.getString(PENDING_ORDER_PREFIX + userId, null))) {
+            checkoutPrefs.edit().remove(PENDING_ORDER_PREFIX + userId).commit();
+        }
+    }
+
+    public void flush() {
+        mainHandler.removeCallbacks(syncRunnable);
+        syncer.sync();
+    }
+
+    private void scheduleSync() {
+        mainHandler.removeCallbacks(syncRunnable);
+        mainHandler.postDelayed(syncRunnable, SYNC_DELAY_MS);
+    }
+
+    private void writeLocally(String userId, CartItem item) {
+        rememberConfirmed(userId, item.getItemId());
+        CartItem previous = localStore.findItem(userId, item.getItemId());
+        localStore.putItem(userId, item);
+        outbox.enqueue(CartOperation.upsert(userId, item.getItemId(), item.getItemName(), item.getPrice().getCents(), item.getQuantity(), item.getImageUrl(), item.getTimestamp().getTime()).withBase(previous));
+        postChanged(userId, item);
+    }
+
+    private void rememberConfirmed(String userId, String itemId) {
+        String key = lineKey(userId, itemId);
+        if (!confirmedLines.containsKey(key)) {
+            confirmedLines.put(key, localStore.findItem(userId, itemId));
+        }
+    }
+
+    private void rememberConfirmed(String userId, String itemId, CartItem current) {
+        String key = lineKey(userId, itemId);
+        if (!confirmedLines.containsKey(key)) {
+            confirmedLines.put(key, current);
+        }
+    }
+
+    private void reconcileAcknowledged(List<CartOperation> operations) {
+        for (CartOperation operation : operations) {
+            String key = lineKey(operation.getUserId(), operation.getItemId());
+            if (!outbox.hasPending(operation.getUserId(), operation.getItemId())) {
+                confirmedLines.remove(key);
+                applyDeferred(operation, deferredLines.remove(key));
+            } else if (operation.getType() == CartOperation.Type.DELETE) {
+                confirmedLines.put(key, null);
+            } else {
+                confirmedLines.put(key, lineOf(operation));
+            }
+        }
+    }
+
+    /**
+     * Brings the local line to the server's once its last mutation is acknowledged. Only a deferred
+     * change that includes the mutation is applied; an older one is dropped, because the change
+     * made by the mutation itself has not arrived yet and will be merged as usual when it does.
+     */
+    private void applyDeferred(CartOperation operation, DeferredLine deferred) {
+        if (deferred == null) {
+            return;
+        }
+        boolean includesOperation = deferred.seenOpIds.contains(operation.getOpId()) || (operation.getType() == CartOperation.Type.DELETE && deferred.sawRemoval);
+        if (includesOperation) {
+            mergeDeferred(operation.getUserId(), operation.getItemId(), deferred);
+        }
+    }
+
+    private void mergeDeferred(String userId, String itemId, DeferredLine deferred) {
+        if (deferred.line == null) {
+            mergeRemote(userId, Collections.emptyList(), Collections.singletonList(itemId), Collections.emptyMap(), null);
+        } else {
+            mergeRemote(userId, Collections.singletonList(deferred.line), Collections.emptyList(), Collections.emptyMap(), null);
+        }
+    }
+
+    private static CartItem lineOf(CartOperation operation) {
+        CartItem line = new CartItem(operation.getItemId(), operation.getItemName(), Money.ofCents(operation.getItemPriceCents()), operation.getQuantity());
+        line.setImageUrl(operation.getImageUrl());
+        line.setTimestamp(new Date(operation.getAddedAt()));
+        return line;
+    }
+
+    private void rollBackRejected(List<CartOperation> operations, Exception e) {
+        for (CartOperation operation : operations) {
+            String userId = operation.getUserId();
+            String itemId = operation.getItemId();
+            String key = lineKey(userId, itemId);
+            if (outbox.hasPending(userId, itemId) || !confirmedLines.containsKey(key)) {
+                continue;
+            }
+            CartItem confirmed = confirmedLines.remove(key);
+            if (confirmed == null) {
+                localStore.deleteItem(userId, itemId);
+                postRemoved(userId, itemId);
+            } else {
+                localStore.putItem(userId, confirmed);
+                postChanged(userId, confirmed);
+            }
+            // The rejected mutation changed nothing on the server, so anything seen meanwhile is current.
+            DeferredLine deferred = deferredLines.remove(key);
+            if (deferred != null && (deferred.line != null || deferred.sawRemoval)) {
+                mergeDeferred(userId, itemId, deferred);
+            }
+            mainHandler.post(() -> {
+                for (MutationListener listener : new ArrayList<>(mutationListeners)) {
+                    listener.onMutationRolledBack(itemId, e);
+                }
+            });
+        }
+    }
+
+    private static String lineKey(String userId, String itemId) {
+        return userId + "/" + itemId;
+    }
+
+    private void startRemoteListener(String userId) {
+        final boolean[] firstServerSnapshot = {true};
+        remoteListener = db.collection("carts").document(userId).collection("items").addSnapshotListener(mappingExecutor, (snapshots, e) -> {
+            if (e != null) {
+                Log.e(TAG, "Error listening to remote cart for user " + userId, e);
+                return;
+            }
+            if (snapshots == null) {
+                return;
+            }
+            Runnable observer = mappingObserver;
+            if (observer != null) {
+                observer.run();
+            }
+
+            List<CartItem> changed = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            Map<String, String> lastOpIds = new HashMap<>();
+            for (DocumentChange change : snapshots.getDocumentChanges()) {
+                QueryDocumentSnapshot document = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    removed.add(document.getId());
+                } else {
+                    changed.add(toCartItem(document));
+                    lastOpIds.put(document.getId(), document.getString(CartItemCodec.LAST_OP_ID));
+                }
+            }
+            Set<String> remoteIds = null;
+            if (firstServerSnapshot[0] && !snapshots.getMetadata().isFromCache()) {
+                firstServerSnapshot[0] = false;
+                remoteIds = new HashSet<>();
+                for (QueryDocumentSnapshot document : snapshots) {
+                    remoteIds.add(document.getId());
+                }
+            }
+            Set<String> fullRemoteIds = remoteIds;
+            diskExecutor.execute(() -> mergeRemote(userId, changed, removed, lastOpIds, fullRemoteIds));
+        });
+    }
+
+    void setMappingObserver(Runnable mappingObserver) {
+        this.mappingObserver = mappingObserver;
+    }
+
+    private void stopRemoteListener() {
+        if (remoteListener != null) {
+            remoteListener.remove();
+            remoteListener = null;
+            diskExecutor.execute(deferredLines::clear);
+        }
+    }
+
+    private static CartItem toCartItem(QueryDocumentSnapshot document) {
+        CartItem cartItem = CartItemCodec.decode(document);
+        cartItem.setItemId(document.getId());
+        return cartItem;
+    }
+
+    private void mergeRemote(String userId, List<CartItem> changed, List<String> removed, Map<String, String> lastOpIds, Set<String> fullRemoteIds) {
+        List<CartItem> applied = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (CartItem remoteItem : changed) {
+            if (outbox.hasPending(userId, remoteItem.getItemId())) {
+                deferredLine(userId, remoteItem.getItemId()).changed(remoteItem, lastOpIds.get(remoteItem.getItemId()));
+                continue;
+            }
+            CartItem localItem = localStore.findItem(userId, remoteItem.getItemId());
+            if (localItem != null && remoteItem.getTimestamp() == null) {
+                remoteItem.setTimestamp(localItem.getTimestamp());
+            } else if (remoteItem.getTimestamp() == null) {
+                remoteItem.setTimestamp(new Date());
+            }
+            if (!remoteItem.hasSameContent(localItem)) {
+                localStore.putItem(userId, remoteItem);
+                applied.add(remoteItem);
+            }
+        }
+
+        for (String itemId : removed) {
+            if (outbox.hasPending(userId, itemId)) {
+                deferredLine(userId, itemId).removed();
+            } else if (localStore.findItem(userId, itemId) != null) {
+                localStore.deleteItem(userId, itemId);
+                deleted.add(itemId);
+            }
+        }
+
+        if (fullRemoteIds != null) {
+            for (CartItem localItem : localStore.loadItems(userId)) {
+                String itemId = localItem.getItemId();
+                if (!fullRemoteIds.contains(itemId) && !outbox.hasPending(userId, itemId)) {
+                    localStore.deleteItem(userId, itemId);
+                    deleted.add(itemId);
+                }
+            }
+        }
+        if (!applied.isEmpty() || !deleted.isEmpty()) {
+            postRemoteChanges(userId, Collections.unmodifiableList(applied), Collections.unmodifiableList(deleted));
+        }
+    }
+
+    private DeferredLine deferredLine(String userId, String itemId) {
+        String key = lineKey(userId, itemId);
+        DeferredLine deferred = deferredLines.get(key);
+        if (deferred == null) {
+            deferred = new DeferredLine();
+            deferredLines.put(key, deferred);
+        }
+        return deferred;
+    }
+
+    private void postRemoteChanges(String userId, List<CartItem> changed, List<String> removed) {
+        mainHandler.post(() -> {
+            if (userId.equals(observedUserId)) {
+                for (CartListener listener : new ArrayList<>(listeners)) {
+                    for (CartItem item : changed) {
+                        listener.onCartItemChanged(item);
+                    }
+                    for (String itemId : removed) {
+                        listener.onCartItemRemoved(itemId);
+                    }
+                }
+            }
+        });
+    }
+
+    private void postChanged(String userId, CartItem item) {
+        mainHandler.post(() -> {
+            if (userId.equals(observedUserId)) {
+                for (CartListener listener : new ArrayList<>(listeners)) {
+                    listener.onCartItemChanged(item);
+                }
+            }
+        });
+    }
+
+    private void postRemoved(String userId, String itemId) {
+        mainHandler.post(() -> {
+            if (userId.equals(observedUserId)) {
+                for (CartListener listener : new ArrayList<>(listeners)) {
+                    listener.onCartItemRemoved(itemId);
+                }
+            }
+        });
+    }
+
+    public interface CartListener {
+        void onCartLoaded(List<CartItem> items);
+
+        void onCartItemChanged(CartItem item);
+
+        void onCartItemRemoved(String itemId);
+    }
+
+    public interface BulkListener {
+        void onBulkProgress(int done, int total);
+
+        void onBulkComplete(int total, int failedCount);
+    }
+
+    public interface RepriceListener {
+        void onCartRepriced(List<PriceChange> priceChanges, List<String> unavailableItemIds);
+    }
+
+    public interface CheckoutListener {
+        void onCheckoutFinished(CheckoutResult result);
+
+        void onCheckoutFailed(Exception e);
+    }
+
+    private static class PendingCheckout {
+        final String userId;
+        final CheckoutListener listener;
+
+        PendingCheckout(String userId, CheckoutListener listener) {
+            this.userId = userId;
+            this.listener = listener;
+        }
+    }
+
+    private static class DeferredLine {
+        final Set<String> seenOpIds = new HashSet<>();
+        boolean sawRemoval;
+        // Latest remote state; null when the line was removed.
+        CartItem line;
+
+        void changed(CartItem remoteLine, String lastOpId) {
+            line = remoteLine;
+            if (lastOpId != null) {
+                seenOpIds.add(lastOpId);
+            }
+        }
+
+        void removed() {
+            line = null;
+            sawRemoval = true;
+        }
+    }
+
+    private static class BulkJob {
+        final String userId;
+        final Set<String> remaining = new HashSet<>();
+        final int total;
+        final BulkListener listener;
+        int failed;
+
+        BulkJob(String userId, List<CartOperation> operations, BulkListener listener) {
+            this.userId = userId;
+            this.listener = listener;
+            for (CartOperation operation : operations) {
+                remaining.add(operation.getItemId());
+            }
+            this.total = remaining.size();
+        }
+    }
+
+    public interface MutationListener {
+        void onMutationRolledBack(String itemId, Exception e);
+    }
+}
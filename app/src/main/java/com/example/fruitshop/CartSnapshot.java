@@ -0,0 +1,236 @@
+package com.example.fruitshop;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable view of one user's cart, ordered by when each line was added. Lines are held in two
+ * persistent treaps, one in cart order and one by item id, so an update copies only the path to
+ * the changed line and shares every other node with this snapshot; it costs O(log n), and totals
+ * are adjusted by the changed line only. Lines must not be mutated once they are in a snapshot.
+ */
+public final class CartSnapshot {
+
+    public static final CartSnapshot EMPTY = new CartSnapshot(null, null, null, 0, 0, false);
+
+    static final Comparator<CartItem> CART_ORDER = (a, b) -> {
+        int byTime = Long.compare(addedAt(a), addedAt(b));
+        return byTime != 0 ? byTime : a.getItemId().compareTo(b.getItemId());
+    };
+
+    private static final Comparator<CartItem> BY_ID = (a, b) -> a.getItemId().compareTo(b.getItemId());
+
+    private final String userId;
+    private final Node byOrder;
+    private final Node byId;
+    private final List<CartItem> items;
+    private final long subtotalCents;
+    private final long unitCount;
+    private final boolean loaded;
+
+    private CartSnapshot(String userId, Node byOrder, Node byId, long subtotalCents, long unitCount, boolean loaded) {
+        this.userId = userId;
+        this.byOrder = byOrder;
+        this.byId = byId;
+        this.items = new Items(byOrder);
+        this.subtotalCents = subtotalCents;
+        this.unitCount = unitCount;
+        this.loaded = loaded;
+    }
+
+    public static CartSnapshot of(String userId, List<CartItem> lines) {
+        Node byOrder = null;
+        Node byId = null;
+        long subtotalCents = 0;
+        long unitCount = 0;
+        for (CartItem item : lines) {
+            byOrder = Node.insert(byOrder, item, CART_ORDER);
+            byId = Node.insert(byId, item, BY_ID);
+            subtotalCents += lineCents(item);
+            unitCount += item.getQuantity();
+        }
+        return new CartSnapshot(userId, byOrder, byId, subtotalCents, unitCount, true);
+    }
+
+    public CartSnapshot withItem(CartItem item) {
+        CartItem existing = findById(item.getItemId());
+        if (item.hasSameContent(existing)) {
+            return this;
+        }
+        Node newByOrder = byOrder;
+        Node newById = byId;
+        long newSubtotal = subtotalCents + lineCents(item);
+        long newUnits = unitCount + item.getQuantity();
+        if (existing != null) {
+            newByOrder = Node.remove(newByOrder, existing, CART_ORDER);
+            newById = Node.remove(newById, existing, BY_ID);
+            newSubtotal -= lineCents(existing);
+            newUnits -= existing.getQuantity();
+        }
+        newByOrder = Node.insert(newByOrder, item, CART_ORDER);
+        newById = Node.insert(newById, item, BY_ID);
+        return new CartSnapshot(userId, newByOrder, newById, newSubtotal, newUnits, loaded);
+    }
+
+    public CartSnapshot withoutItem(String itemId) {
+        CartItem existing = findById(itemId);
+        if (existing == null) {
+            return this;
+        }
+        return new CartSnapshot(userId, Node.remove(byOrder, existing, CART_ORDER), Node.remove(byId, existing, BY_ID),
+                subtotalCents - lineCents(existing), unitCount - existing.getQuantity(), loaded);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public List<CartItem> getItems() {
+        return items;
+    }
+
+    public CartItem findById(String itemId) {
+        Node node = byId;
+        while (node != null) {
+            int c = itemId.compareTo(node.item.getItemId());
+            if (c == 0) {
+                return node.item;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return byOrder == null;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getUnitCount() {
+        return unitCount;
+    }
+
+    private static long lineCents(CartItem item) {
+        return item.getPrice().getCents() * item.getQuantity();
+    }
+
+    private static long addedAt(CartItem item) {
+        return item.getTimestamp() != null ? item.getTimestamp().getTime() : Long.MAX_VALUE;
+    }
+
+    /** The lines in cart order, read through the order treap. */
+    private static final class Items extends AbstractList<CartItem> {
+        private final Node root;
+
+        Items(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public CartItem get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+            Node node = root;
+            while (true) {
+                int leftSize = Node.size(node.left);
+                if (index < leftSize) {
+                    node = node.left;
+                } else if (index == leftSize) {
+                    return node.item;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return Node.size(root);
+        }
+    }
+
+    /**
+     * A treap node. The priority comes from the item id, so a set of lines always has the same shape
+     * whatever order it was built in.
+     */
+    private static final class Node {
+        final CartItem item;
+        final Node left;
+        final Node right;
+        final int priority;
+        final int size;
+
+        Node(CartItem item, Node left, Node right) {
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.priority = priority(item.getItemId());
+            this.size = 1 + size(left) + size(right);
+        }
+
+        static int size(Node node) {
+            return node != null ? node.size : 0;
+        }
+
+        static Node insert(Node node, CartItem item, Comparator<CartItem> order) {
+            if (node == null) {
+                return new Node(item, null, null);
+            }
+            if (order.compare(item, node.item) < 0) {
+                Node left = insert(node.left, item, order);
+                if (left.priority > node.priority) {
+                    return new Node(left.item, left.left, new Node(node.item, left.right, node.right));
+                }
+                return new Node(node.item, left, node.right);
+            }
+            Node right = insert(node.right, item, order);
+            if (right.priority > node.priority) {
+                return new Node(right.item, new Node(node.item, node.left, right.left), right.right);
+            }
+            return new Node(node.item, node.left, right);
+        }
+
+        static Node remove(Node node, CartItem item, Comparator<CartItem> order) {
+            if (node == null) {
+                return null;
+            }
+            int c = order.compare(item, node.item);
+            if (c < 0) {
+                return new Node(node.item, remove(node.left, item, order), node.right);
+            }
+            if (c > 0) {
+                return new Node(node.item, node.left, remove(node.right, item, order));
+            }
+            return merge(node.left, node.right);
+        }
+
+        // Every line in low sorts before every line in high.
+        private static Node merge(Node low, Node high) {
+            if (low == null) {
+                return high;
+            }
+            if (high == null) {
+                return low;
+            }
+            if (low.priority > high.priority) {
+                return new Node(low.item, low.left, merge(low.right, high));
+            }
+            return new Node(high.item, merge(low, high.left), high.right);
+        }
+
+        private static int priority(String itemId) {
+            int h = itemId.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
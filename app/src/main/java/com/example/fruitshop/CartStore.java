@@ -0,0 +1,100 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Process-wide, lifecycle-aware holder of the signed-in user's cart. Screens observe it with
+ * {@link #observe}; the first active observer starts CartRepository observation and it keeps running
+ * for a short while after the last one stops, so rotations and screen switches reuse the current
+ * snapshot instead of reloading the cart.
+ */
+public class CartStore extends LiveData<CartSnapshot> implements CartRepository.CartListener {
+
+    private static final String TAG = "CartStore";
+    private static final long LINGER_MS = 5_000;
+
+    private static CartStore instance;
+
+    private final CartRepository repository;
+    private final FirebaseAuth auth;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable stopObserving = this::stopObserving;
+    private String observedUserId;
+
+    public static synchronized CartStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new CartStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CartStore(Context context) {
+        super(CartSnapshot.EMPTY);
+        this.repository = CartRepository.getInstance(context);
+        this.auth = FirebaseAuth.getInstance();
+    }
+
+    @Override
+    protected void onActive() {
+        mainHandler.removeCallbacks(stopObserving);
+        FirebaseUser user = auth.getCurrentUser();
+        String userId = user != null ? user.getUid() : null;
+        if (!Objects.equals(userId, getValue().getUserId())) {
+            setValue(CartSnapshot.EMPTY);
+        }
+        if (Objects.equals(userId, observedUserId)) {
+            return;
+        }
+        stopObserving();
+        if (userId != null) {
+            Log.d(TAG, "Observing cart for user " + userId);
+            observedUserId = userId;
+            repository.observe(userId, this);
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        mainHandler.postDelayed(stopObserving, LINGER_MS);
+    }
+
+    private void stopObserving() {
+        if (observedUserId != null) {
+            Log.d(TAG, "Stopped observing cart for user " + observedUserId);
+            repository.removeListener(this);
+            observedUserId = null;
+        }
+    }
+
+    @Override
+    public void onCartLoaded(List<CartItem> items) {
+        setValue(CartSnapshot.of(observedUserId, items));
+    }
+
+    @Override
+    public void onCartItemChanged(CartItem item) {
+        publish(getValue().withItem(item));
+    }
+
+    @Override
+    public void onCartItemRemoved(String itemId) {
+        publish(getValue().withoutItem(itemId));
+    }
+
+    private void publish(CartSnapshot snapshot) {
+        if (snapshot != getValue()) {
+            setValue(snapshot);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.fruitshop;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Aggregate of one cart, kept on carts/{uid} next to the items subcollection so headers,
+ * badges and checkout preflight read one document instead of every line.
+ */
+public final class CartSummary {
+
+    static final String LINE_COUNT = "lineCount";
+    static final String UNIT_COUNT = "unitCount";
+    static final String SUBTOTAL_CENTS = "subtotalCents";
+    static final String LAST_UPDATED = "lastUpdated";
+    static final String LAST_ORDER_ID = "lastOrderId";
+
+    private static final int DOCUMENT_CAPACITY = 6;
+
+    private final long lineCount;
+    private final long unitCount;
+    private final long subtotalCents;
+    private final Date lastUpdated;
+
+    public CartSummary(long lineCount, long unitCount, long subtotalCents, Date lastUpdated) {
+        this.lineCount = lineCount;
+        this.unitCount = unitCount;
+        this.subtotalCents = subtotalCents;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public static CartSummary decode(DocumentSnapshot document) {
+        return new CartSummary(longOrZero(document, LINE_COUNT), longOrZero(document, UNIT_COUNT), longOrZero(document, SUBTOTAL_CENTS), document.getDate(LAST_UPDATED));
+    }
+
+    public static Map<String, Object> encodeIncrement(long lineCountDelta, long unitCountDelta, long subtotalDeltaCents) {
+        Map<String, Object> data = new HashMap<>(DOCUMENT_CAPACITY);
+        data.put(LINE_COUNT, FieldValue.increment(lineCountDelta));
+        data.put(UNIT_COUNT, FieldValue.increment(unitCountDelta));
+        data.put(SUBTOTAL_CENTS, FieldValue.increment(subtotalDeltaCents));
+        data.put(LAST_UPDATED, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    /** Resets the summary of a cart that was just turned into the given order. */
+    public static Map<String, Object> encodeCleared(String orderId) {
+        Map<String, Object> data = new HashMap<>(DOCUMENT_CAPACITY);
+        data.put(LINE_COUNT, 0L);
+        data.put(UNIT_COUNT, 0L);
+        data.put(SUBTOTAL_CENTS, 0L);
+        data.put(LAST_UPDATED, FieldValue.serverTimestamp());
+        data.put(LAST_ORDER_ID, orderId);
+        return data;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getUnitCount() {
+        return unitCount;
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CartSummary)) {
+            return false;
+        }
+        CartSummary other = (CartSummary) o;
+        return lineCount == other.lineCount && unitCount == other.unitCount && subtotalCents == other.subtotalCents && Objects.equals(lastUpdated, other.lastUpdated);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lineCount, unitCount, subtotalCents, lastUpdated);
+    }
+
+    private static long longOrZero(DocumentSnapshot document, String field) {
+        Long value = document.getLong(field);
+        return value != null ? value : 0;
+    }
+}
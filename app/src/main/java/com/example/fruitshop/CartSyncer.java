@@ -0,0 +1,97 @@
+package com.example.fruitshop;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Drains the outbox into the backend in order, one batch in flight at a time. All outbox
+ * access happens on the given executor. Failed batches stay queued for a later retry;
+ * batches the backend rejects outright are dropped and reported so they can be rolled back.
+ * While paused, operations keep queueing but none are sent.
+ */
+public class CartSyncer {
+
+    // Each operation can also touch its user's summary document, and Firestore caps a batch at 500 writes.
+    public static final int MAX_BATCH_SIZE = 250;
+
+    private final CartOutbox outbox;
+    private final CartBackend backend;
+    private final Executor executor;
+    private final Listener listener;
+    private boolean inFlight;
+    private int pauses;
+
+    public CartSyncer(CartOutbox outbox, CartBackend backend, Executor executor, Listener listener) {
+        this.outbox = outbox;
+        this.backend = backend;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public void sync() {
+        executor.execute(this::drain);
+    }
+
+    /** Stops sending until a matching {@link #resume()}; both must be called on the executor. */
+    public void pause() {
+        pauses++;
+    }
+
+    public void resume() {
+        pauses--;
+        drain();
+    }
+
+    private void drain() {
+        if (inFlight || pauses > 0) {
+            return;
+        }
+        List<CartOperation> operations = outbox.peek(MAX_BATCH_SIZE);
+        if (operations.isEmpty()) {
+            listener.onSyncIdle();
+            return;
+        }
+
+        inFlight = true;
+        backend.apply(operations, new CartBackend.Callback() {
+            @Override
+            public void onSuccess() {
+                executor.execute(() -> {
+                    outbox.remove(operations);
+                    inFlight = false;
+                    listener.onOperationsSynced(operations);
+                    drain();
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                executor.execute(() -> {
+                    outbox.release();
+                    inFlight = false;
+                    listener.onSyncFailed(e);
+                });
+            }
+
+            @Override
+            public void onRejected(Exception e) {
+                executor.execute(() -> {
+                    outbox.remove(operations);
+                    inFlight = false;
+                    listener.onOperationsRejected(operations, e);
+                    drain();
+                });
+            }
+        });
+    }
+
+    public interface Listener {
+        void onOperationsSynced(List<CartOperation> operations);
+
+        void onSyncIdle();
+
+        void onSyncFailed(Exception e);
+
+        void onOperationsRejected(List<CartOperation> operations, Exception e);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.fruitshop;
+
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+public class CartWriter {
+
+    private final FirebaseFirestore db;
+
+    public CartWriter(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    public DocumentReference cartRef(String userId) {
+        return db.collection("carts").document(userId);
+    }
+
+    public CollectionReference cartItemsRef(String userId) {
+        return cartRef(userId).collection("items");
+    }
+
+    public DocumentReference cartItemRef(String userId, String itemId) {
+        return cartItemsRef(userId).document(itemId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.fruitshop;
+
+/**
+ * One remote catalog document newer than the local snapshot: either a full item or a tombstone.
+ */
+public class CatalogChange {
+
+    private final String itemId;
+    private final Item item;
+    private final long sortKey;
+    private final long updatedAt;
+
+    private CatalogChange(String itemId, Item item, long sortKey, long updatedAt) {
+        this.itemId = itemId;
+        this.item = item;
+        this.sortKey = sortKey;
+        this.updatedAt = updatedAt;
+    }
+
+    public static CatalogChange upsert(Item item, long sortKey, long updatedAt) {
+        return new CatalogChange(item.getItemId(), item, sortKey, updatedAt);
+    }
+
+    public static CatalogChange delete(String itemId, long updatedAt) {
+        return new CatalogChange(itemId, null, 0, updatedAt);
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public boolean isDeleted() {
+        return item == null;
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+}
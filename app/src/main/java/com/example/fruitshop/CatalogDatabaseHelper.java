@@ -0,0 +1,61 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+public class CatalogDatabaseHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "catalog.db";
+    private static final int DATABASE_VERSION = 2;
+
+    static final String TABLE_ITEMS = "catalog_items";
+    static final String TABLE_META = "catalog_meta";
+    static final String TABLE_TOMBSTONES = "catalog_tombstones";
+
+    public CatalogDatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    CatalogDatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ITEMS + " ("
+                + "item_id TEXT PRIMARY KEY, "
+                + "sort_key INTEGER NOT NULL, "
+                + "description TEXT, "
+                + "details TEXT, "
+                + "price_cents INTEGER NOT NULL DEFAULT 0, "
+                + "category TEXT, "
+                + "available INTEGER NOT NULL DEFAULT 1, "
+                + "image_url TEXT, "
+                + "updated_at INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_catalog_order ON " + TABLE_ITEMS + " (sort_key, item_id)");
+        db.execSQL("CREATE TABLE " + TABLE_META + " ("
+                + "meta_key TEXT PRIMARY KEY, "
+                + "meta_value INTEGER NOT NULL)");
+        createTombstones(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createTombstones(db);
+        }
+    }
+
+    private static void createTombstones(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TOMBSTONES + " ("
+                + "item_id TEXT PRIMARY KEY, "
+                + "updated_at INTEGER NOT NULL)");
+    }
+}
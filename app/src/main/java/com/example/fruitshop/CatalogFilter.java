@@ -0,0 +1,268 @@
+package com.example.fruitshop;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Facet filter and sort over catalog positions. Category and availability are kept as precomputed
+ * bitsets and price/name order as presorted permutations, so a query is a few bitset intersections
+ * followed by one walk of the permutation for the requested order.
+ */
+public class CatalogFilter {
+
+    public enum Sort {
+        CATALOG, PRICE_LOW_TO_HIGH, PRICE_HIGH_TO_LOW, NAME
+    }
+
+    private final int size;
+    private final long[] sortedPrices;
+    private final int[] byPrice;
+    private final int[] byName;
+    private final BitSet[] categoryBits;
+    private final BitSet availableBits;
+
+    private CatalogFilter(int size, long[] sortedPrices, int[] byPrice, int[] byName, BitSet[] categoryBits, BitSet availableBits) {
+        this.size = size;
+        this.sortedPrices = sortedPrices;
+        this.byPrice = byPrice;
+        this.byName = byName;
+        this.categoryBits = categoryBits;
+        this.availableBits = availableBits;
+    }
+
+    public static CatalogFilter build(long[] priceCents, String[] names, Item.Category[] categories, boolean[] available) {
+        int size = priceCents.length;
+
+        BitSet[] categoryBits = new BitSet[Item.Category.values().length];
+        for (int i = 0; i < categoryBits.length; i++) {
+            categoryBits[i] = new BitSet(size);
+        }
+        BitSet availableBits = new BitSet(size);
+        for (int position = 0; position < size; position++) {
+            Item.Category category = categories[position] != null ? categories[position] : Item.Category.OTHER;
+            categoryBits[category.ordinal()].set(position);
+            if (available[position]) {
+                availableBits.set(position);
+            }
+        }
+
+        int[] byPrice = sortedPermutation(size, (a, b) -> {
+            int byCents = Long.compare(priceCents[a], priceCents[b]);
+            return byCents != 0 ? byCents : Integer.compare(a, b);
+        });
+        long[] sortedPrices = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = priceCents[byPrice[i]];
+        }
+        int[] byName = sortedPermutation(size, (a, b) -> {
+            int byText = String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]);
+            return byText != 0 ? byText : Integer.compare(a, b);
+        });
+        return new CatalogFilter(size, sortedPrices, byPrice, byName, categoryBits, availableBits);
+    }
+
+    public static CatalogFilter build(CatalogSource source) {
+        int size = source.size();
+        long[] priceCents = new long[size];
+        String[] names = new String[size];
+        Item.Category[] categories = new Item.Category[size];
+        boolean[] available = new boolean[size];
+        int start = 0;
+        while (start < size) {
+            int position = start;
+            for (Item item : source.loadPage(start, PagedCatalog.PAGE_SIZE)) {
+                priceCents[position] = item.getPrice().getCents();
+                names[position] = item.getDescription();
+                categories[position] = item.getCategory();
+                available[position] = item.isAvailable();
+                position++;
+            }
+            if (position == start) {
+                break;
+            }
+            start = position;
+        }
+        return build(priceCents, names, categories, available);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the catalog positions matching the query in the requested order. When {@code within}
+     * is given, only those positions are considered, and with {@link Sort#CATALOG} their order
+     * (for example search ranking) is kept.
+     */
+    public int[] apply(Query query, int[] within) {
+        BitSet bits = matching(query);
+        if (within != null) {
+            if (query.sort == Sort.CATALOG) {
+                return retain(within, bits);
+            }
+            BitSet withinBits = new BitSet(size);
+            for (int position : within) {
+                withinBits.set(position);
+            }
+            bits.and(withinBits);
+        }
+
+        int[] results = new int[bits.cardinality()];
+        int next = 0;
+        switch (query.sort) {
+            case PRICE_LOW_TO_HIGH:
+            case PRICE_HIGH_TO_LOW: {
+                int low = lowerBound(sortedPrices, query.minPriceCents);
+                int high = priceUpperBound(query.maxPriceCents);
+                boolean ascending = query.sort == Sort.PRICE_LOW_TO_HIGH;
+                for (int i = 0; i < high - low && next < results.length; i++) {
+                    int position = byPrice[ascending ? low + i : high - 1 - i];
+                    if (bits.get(position)) {
+                        results[next++] = position;
+                    }
+                }
+                break;
+            }
+            case NAME:
+                for (int i = 0; i < size && next < results.length; i++) {
+                    if (bits.get(byName[i])) {
+                        results[next++] = byName[i];
+                    }
+                }
+                break;
+            default:
+                for (int position = bits.nextSetBit(0); position >= 0; position = bits.nextSetBit(position + 1)) {
+                    results[next++] = position;
+                }
+                break;
+        }
+        return results;
+    }
+
+    private BitSet matching(Query query) {
+        BitSet bits = new BitSet(size);
+        if (query.categories.isEmpty() || query.categories.size() == categoryBits.length) {
+            bits.set(0, size);
+        } else {
+            for (Item.Category category : query.categories) {
+                bits.or(categoryBits[category.ordinal()]);
+            }
+        }
+        if (query.availableOnly) {
+            bits.and(availableBits);
+        }
+        if (query.minPriceCents > 0 || query.maxPriceCents != Long.MAX_VALUE) {
+            bits.and(priceRange(query.minPriceCents, query.maxPriceCents));
+        }
+        return bits;
+    }
+
+    private BitSet priceRange(long minCents, long maxCents) {
+        int low = lowerBound(sortedPrices, minCents);
+        int high = priceUpperBound(maxCents);
+        BitSet range = new BitSet(size);
+        if (high - low <= size / 2) {
+            for (int i = low; i < high; i++) {
+                range.set(byPrice[i]);
+            }
+        } else {
+            range.set(0, size);
+            for (int i = 0; i < low; i++) {
+                range.clear(byPrice[i]);
+            }
+            for (int i = high; i < size; i++) {
+                range.clear(byPrice[i]);
+            }
+        }
+        return range;
+    }
+
+    private int priceUpperBound(long maxCents) {
+        return maxCents == Long.MAX_VALUE ? size : lowerBound(sortedPrices, maxCents + 1);
+    }
+
+    private static int[] retain(int[] positions, BitSet bits) {
+        int[] kept = new int[positions.length];
+        int count = 0;
+        for (int position : positions) {
+            if (bits.get(position)) {
+                kept[count++] = position;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] sortedPermutation(int size, Comparator<Integer> order) {
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, order);
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = boxed[i];
+        }
+        return permutation;
+    }
+
+    public static class Query {
+        final Set<Item.Category> categories;
+        final long minPriceCents;
+        final long maxPriceCents;
+        final boolean availableOnly;
+        final Sort sort;
+
+        public Query(Set<Item.Category> categories, long minPriceCents, long maxPriceCents, boolean availableOnly, Sort sort) {
+            this.categories = categories.isEmpty() ? EnumSet.noneOf(Item.Category.class) : EnumSet.copyOf(categories);
+            this.minPriceCents = minPriceCents;
+            this.maxPriceCents = maxPriceCents;
+            this.availableOnly = availableOnly;
+            this.sort = sort;
+        }
+
+        public static Query all() {
+            return new Query(EnumSet.noneOf(Item.Category.class), 0, Long.MAX_VALUE, false, Sort.CATALOG);
+        }
+
+        public boolean isAll() {
+            return categories.isEmpty() && minPriceCents <= 0 && maxPriceCents == Long.MAX_VALUE && !availableOnly && sort == Sort.CATALOG;
+        }
+
+        public Set<Item.Category> getCategories() {
+            return categories;
+        }
+
+        public long getMinPriceCents() {
+            return minPriceCents;
+        }
+
+        public long getMaxPriceCents() {
+            return maxPriceCents;
+        }
+
+        public boolean isAvailableOnly() {
+            return availableOnly;
+        }
+
+        public Sort getSort() {
+            return sort;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.MemoryCategory;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * Loads catalog images through Glide, decoded off the main thread at the row's image size, and
+ * preloads the rows just ahead of the scroll direction.
+ */
+public class CatalogImageLoader extends RecyclerView.OnScrollListener {
+
+    private static final int PRELOAD_AHEAD = 6;
+
+    private final Context context;
+    private final RequestManager requestManager;
+    private final int targetSizePx;
+    private final RequestOptions options;
+
+    private int preloadedStart = -1;
+    private int preloadedEnd = -1;
+
+    public CatalogImageLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.requestManager = Glide.with(context);
+        this.targetSizePx = context.getResources().getDimensionPixelSize(R.dimen.catalog_image_size);
+        this.options = new RequestOptions()
+                .override(targetSizePx)
+                .centerCrop()
+                .format(DecodeFormat.PREFER_RGB_565)
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                .placeholder(R.drawable.default_image_placeholder)
+                .error(R.drawable.default_image_placeholder)
+                .dontAnimate();
+        Glide.get(context).setMemoryCategory(MemoryCategory.LOW);
+    }
+
+    public void load(ImageView imageView, Item item) {
+        requestManager.load(model(item)).apply(options).into(imageView);
+    }
+
+    public void loadPlaceholder(ImageView imageView) {
+        requestManager.load(R.drawable.default_image_placeholder).apply(options).into(imageView);
+    }
+
+    public void clear(ImageView imageView) {
+        requestManager.clear(imageView);
+    }
+
+    public void trimMemory(int level) {
+        Glide.get(context).trimMemory(level);
+    }
+
+    private static Object model(Item item) {
+        String imageUrl = item.getImageUrl();
+        return imageUrl != null && !imageUrl.isEmpty() ? imageUrl : item.getImageId();
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager) || !(recyclerView.getAdapter() instanceof ItemAdapter)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        ItemAdapter adapter = (ItemAdapter) recyclerView.getAdapter();
+        int start;
+        int end;
+        if (dy > 0) {
+            start = layoutManager.findLastVisibleItemPosition() + 1;
+            end = Math.min(start + PRELOAD_AHEAD, adapter.getItemCount());
+        } else {
+            end = layoutManager.findFirstVisibleItemPosition();
+            start = Math.max(end - PRELOAD_AHEAD, 0);
+        }
+        for (int position = start; position < end; position++) {
+            if (position >= preloadedStart && position < preloadedEnd) {
+                continue;
+            }
+            Item item = adapter.peekItemAt(position);
+            if (item != null) {
+                requestManager.load(model(item)).apply(options).preload(targetSizePx, targetSizePx);
+            }
+        }
+        preloadedStart = start;
+        preloadedEnd = end;
+    }
+}
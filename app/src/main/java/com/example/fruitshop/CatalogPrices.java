@@ -0,0 +1,55 @@
+package com.example.fruitshop;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the current catalog entries of many items from the server. The ids are split into whereIn
+ * chunks that are all sent at once, so the read costs one round trip whatever the number of items.
+ */
+public class CatalogPrices {
+
+    private static final String CATALOG = "catalog";
+    // Firestore accepts at most 30 values in one whereIn filter.
+    static final int MAX_IN_VALUES = 30;
+
+    private final FirebaseFirestore db;
+    private final Executor executor;
+
+    public CatalogPrices(FirebaseFirestore db, Executor executor) {
+        this.db = db;
+        this.executor = executor;
+    }
+
+    /**
+     * Maps each id with a catalog document to its item, or to null when the document is a deletion
+     * tombstone. Ids without a document are left out.
+     */
+    public Task<Map<String, Item>> fetch(List<String> itemIds) {
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (int start = 0; start < itemIds.size(); start += MAX_IN_VALUES) {
+            List<String> chunk = new ArrayList<>(itemIds.subList(start, Math.min(itemIds.size(), start + MAX_IN_VALUES)));
+            queries.add(db.collection(CATALOG).whereIn(FieldPath.documentId(), chunk).get(Source.SERVER));
+        }
+        return Tasks.whenAllSuccess(queries).continueWith(executor, task -> {
+            Map<String, Item> catalog = new HashMap<>();
+            for (Object result : task.getResult()) {
+                for (DocumentSnapshot document : ((QuerySnapshot) result).getDocuments()) {
+                    catalog.put(document.getId(), Boolean.TRUE.equals(document.getBoolean("deleted")) ? null : ItemCodec.decode(document));
+                }
+            }
+            return catalog;
+        });
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.fruitshop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over catalog descriptions and details. Query terms match indexed words
+ * exactly, by prefix, or within one edit (via a single-deletion map), and results are ranked with
+ * description matches above details matches. Every query term has to match for a row to be returned.
+ */
+public class CatalogSearchIndex {
+
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int DETAILS_WEIGHT = 1;
+    private static final int EXACT_SCORE = 8;
+    private static final int PREFIX_SCORE = 4;
+    private static final int TYPO_SCORE = 2;
+    private static final int MIN_TYPO_LENGTH = 4;
+    private static final int DENSE_RANK_DIVISOR = 64;
+    private static final int[] NO_RESULTS = new int[0];
+
+    private final int size;
+    private final String[] terms;
+    private final int[][] descriptionPostings;
+    private final int[][] detailsPostings;
+    private final Map<String, int[]> termsByDeletion;
+    private final Scratch scratch;
+
+    private CatalogSearchIndex(int size, String[] terms, int[][] descriptionPostings, int[][] detailsPostings, Map<String, int[]> termsByDeletion) {
+        this.size = size;
+        this.terms = terms;
+        this.descriptionPostings = descriptionPostings;
+        this.detailsPostings = detailsPostings;
+        this.termsByDeletion = termsByDeletion;
+        this.scratch = new Scratch(size);
+    }
+
+    public static CatalogSearchIndex build(CatalogSource source) {
+        int size = source.size();
+        String[] descriptions = new String[size];
+        String[] details = new String[size];
+        int start = 0;
+        while (start < size) {
+            int position = start;
+            for (Item item : source.loadPage(start, PagedCatalog.PAGE_SIZE)) {
+                descriptions[position] = item.getDescription();
+                details[position] = item.getDetails();
+                position++;
+            }
+            if (position == start) {
+                break;
+            }
+            start = position;
+        }
+        return build(descriptions, details);
+    }
+
+    public static CatalogSearchIndex build(String[] descriptions, String[] details) {
+        int size = descriptions.length;
+        TreeMap<String, int[][]> postingsByTerm = new TreeMap<>();
+        Map<String, IntList[]> builders = new HashMap<>();
+        for (int position = 0; position < size; position++) {
+            addField(builders, descriptions[position], position, 0);
+            addField(builders, position < details.length ? details[position] : null, position, 1);
+        }
+        for (Map.Entry<String, IntList[]> entry : builders.entrySet()) {
+            IntList[] fields = entry.getValue();
+            postingsByTerm.put(entry.getKey(), new int[][]{IntList.toArray(fields[0]), IntList.toArray(fields[1])});
+        }
+
+        String[] terms = new String[postingsByTerm.size()];
+        int[][] descriptionPostings = new int[terms.length][];
+        int[][] detailsPostings = new int[terms.length][];
+        Map<String, IntList> deletionBuilders = new HashMap<>();
+        int termId = 0;
+        for (Map.Entry<String, int[][]> entry : postingsByTerm.entrySet()) {
+            String term = entry.getKey();
+            terms[termId] = term;
+            descriptionPostings[termId] = entry.getValue()[0];
+            detailsPostings[termId] = entry.getValue()[1];
+            if (term.length() >= MIN_TYPO_LENGTH) {
+                for (int i = 0; i < term.length(); i++) {
+                    String deletion = term.substring(0, i) + term.substring(i + 1);
+                    IntList ids = deletionBuilders.get(deletion);
+                    if (ids == null) {
+                        ids = new IntList();
+                        deletionBuilders.put(deletion, ids);
+                    }
+                    ids.addIfLast(termId);
+                }
+            }
+            termId++;
+        }
+        Map<String, int[]> termsByDeletion = new HashMap<>(deletionBuilders.size() * 2);
+        for (Map.Entry<String, IntList> entry : deletionBuilders.entrySet()) {
+            termsByDeletion.put(entry.getKey(), IntList.toArray(entry.getValue()));
+        }
+        return new CatalogSearchIndex(size, terms, descriptionPostings, detailsPostings, termsByDeletion);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns matching catalog positions, best match first. A blank query matches nothing.
+     */
+    public synchronized int[] search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return NO_RESULTS;
+        }
+
+        int[] candidates = null;
+        int[] candidateScores = null;
+        int candidateCount = 0;
+        for (String queryTerm : queryTerms) {
+            scoreTerm(queryTerm, scratch);
+            if (candidates == null) {
+                candidates = Arrays.copyOf(scratch.touched.values, scratch.touched.size);
+                candidateScores = new int[candidates.length];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidateScores[i] = scratch.scores[candidates[i]];
+                }
+                candidateCount = candidates.length;
+            } else {
+                int kept = 0;
+                for (int i = 0; i < candidateCount; i++) {
+                    int termScore = scratch.scores[candidates[i]];
+                    if (termScore > 0) {
+                        candidates[kept] = candidates[i];
+                        candidateScores[kept] = candidateScores[i] + termScore;
+                        kept++;
+                    }
+                }
+                candidateCount = kept;
+            }
+            scratch.reset();
+            if (candidateCount == 0) {
+                return NO_RESULTS;
+            }
+        }
+        return candidateCount < size / DENSE_RANK_DIVISOR
+                ? rankSparse(candidates, candidateScores, candidateCount)
+                : rankDense(candidates, candidateScores, candidateCount);
+    }
+
+    private static int[] rankSparse(int[] candidates, int[] candidateScores, int count) {
+        long[] ranked = new long[count];
+        for (int i = 0; i < count; i++) {
+            ranked[i] = ((long) (Integer.MAX_VALUE - candidateScores[i]) << 32) | candidates[i];
+        }
+        Arrays.sort(ranked);
+        int[] results = new int[count];
+        for (int i = 0; i < count; i++) {
+            results[i] = (int) ranked[i];
+        }
+        return results;
+    }
+
+    private int[] rankDense(int[] candidates, int[] candidateScores, int count) {
+        int[] totals = scratch.scores;
+        int maxScore = 0;
+        for (int i = 0; i < count; i++) {
+            totals[candidates[i]] = candidateScores[i];
+            maxScore = Math.max(maxScore, candidateScores[i]);
+        }
+        int[] offsets = new int[maxScore + 2];
+        for (int i = 0; i < count; i++) {
+            offsets[maxScore - candidateScores[i] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] results = new int[count];
+        for (int position = 0; position < size; position++) {
+            int total = totals[position];
+            if (total > 0) {
+                results[offsets[maxScore - total]++] = position;
+                totals[position] = 0;
+            }
+        }
+        return results;
+    }
+
+    private void scoreTerm(String queryTerm, Scratch scratch) {
+        int first = lowerBound(queryTerm);
+        for (int termId = first; termId < terms.length && terms[termId].startsWith(queryTerm); termId++) {
+            addPostings(termId, terms[termId].length() == queryTerm.length() ? EXACT_SCORE : PREFIX_SCORE, scratch);
+        }
+        if (queryTerm.length() < MIN_TYPO_LENGTH) {
+            return;
+        }
+        addTypoCandidates(queryTerm, termsByDeletion.get(queryTerm), scratch);
+        for (int i = 0; i < queryTerm.length(); i++) {
+            String deletion = queryTerm.substring(0, i) + queryTerm.substring(i + 1);
+            addTypoCandidates(queryTerm, termsByDeletion.get(deletion), scratch);
+            int termId = Arrays.binarySearch(terms, deletion);
+            if (termId >= 0) {
+                addPostings(termId, TYPO_SCORE, scratch);
+            }
+        }
+    }
+
+    private void addTypoCandidates(String queryTerm, int[] candidates, Scratch scratch) {
+        if (candidates == null) {
+            return;
+        }
+        for (int termId : candidates) {
+            if (!terms[termId].startsWith(queryTerm) && withinOneEdit(queryTerm, terms[termId])) {
+                addPostings(termId, TYPO_SCORE, scratch);
+            }
+        }
+    }
+
+    private void addPostings(int termId, int score, Scratch scratch) {
+        for (int position : descriptionPostings[termId]) {
+            scratch.raise(position, score * DESCRIPTION_WEIGHT);
+        }
+        for (int position : detailsPostings[termId]) {
+            scratch.raise(position, score * DETAILS_WEIGHT);
+        }
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * True when a and b differ by at most one insertion, deletion, substitution or adjacent swap.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        int lengthDiff = a.length() - b.length();
+        if (Math.abs(lengthDiff) > 1) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < a.length() && j < b.length()) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (edited) {
+                return false;
+            }
+            edited = true;
+            if (lengthDiff > 0) {
+                i++;
+            } else if (lengthDiff < 0) {
+                j++;
+            } else if (i + 1 < a.length() && a.charAt(i) == b.charAt(j + 1) && a.charAt(i + 1) == b.charAt(j)) {
+                i += 2;
+                j += 2;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return !edited || (i == a.length() && j == b.length());
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addField(Map<String, IntList[]> builders, String text, int position, int field) {
+        for (String token : tokenize(text)) {
+            IntList[] fields = builders.get(token);
+            if (fields == null) {
+                fields = new IntList[2];
+                builders.put(token, fields);
+            }
+            if (fields[field] == null) {
+                fields[field] = new IntList();
+            }
+            fields[field].addIfLast(position);
+        }
+    }
+
+    private static class Scratch {
+        final int[] scores;
+        final IntList touched = new IntList();
+
+        Scratch(int size) {
+            scores = new int[size];
+        }
+
+        void raise(int position, int score) {
+            int current = scores[position];
+            if (current == 0) {
+                touched.add(position);
+            }
+            if (score > current) {
+                scores[position] = score;
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                scores[touched.values[i]] = 0;
+            }
+            touched.size = 0;
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void addIfLast(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        static int[] toArray(IntList list) {
+            return list == null ? NO_RESULTS : Arrays.copyOf(list.values, list.size);
+        }
+    }
+}
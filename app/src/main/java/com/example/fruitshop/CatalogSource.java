@@ -0,0 +1,10 @@
+package com.example.fruitshop;
+
+import java.util.List;
+
+public interface CatalogSource {
+
+    int size();
+
+    List<Item> loadPage(int start, int count);
+}
@@ -0,0 +1,79 @@
+package com.example.fruitshop;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Pulls catalog documents changed since the local watermark and merges them into the snapshot.
+ * Documents equal to the watermark are fetched again because several can share one timestamp;
+ * {@link LocalCatalogStore#applyChanges} skips the ones already applied.
+ */
+public class CatalogSync {
+
+    private static final String TAG = "CatalogSync";
+    private static final String COLLECTION = "catalog";
+
+    public interface Listener {
+        void onCatalogUpdated(long snapshotVersion, int changedCount);
+    }
+
+    private final FirebaseFirestore db;
+    private final LocalCatalogStore store;
+    private final Executor diskExecutor;
+    private final Executor callbackExecutor;
+
+    public CatalogSync(FirebaseFirestore db, LocalCatalogStore store, Executor diskExecutor, Executor callbackExecutor) {
+        this.db = db;
+        this.store = store;
+        this.diskExecutor = diskExecutor;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /** Must be called on {@code diskExecutor}, since it reads the watermark from disk. */
+    public void sync(Listener listener) {
+        long watermark = store.getWatermark();
+        Log.d(TAG, "Fetching catalog changes since " + watermark);
+        db.collection(COLLECTION)
+                .whereGreaterThanOrEqualTo("updatedAt", new Timestamp(new Date(watermark)))
+                .orderBy("updatedAt", Query.Direction.ASCENDING)
+                .get(Source.SERVER)
+                .addOnSuccessListener(diskExecutor, snapshot -> {
+                    int changed = store.applyChanges(toChanges(snapshot));
+                    Log.d(TAG, "Fetched " + snapshot.size() + " catalog documents, " + changed + " changed.");
+                    if (changed > 0) {
+                        long version = store.getSnapshotVersion();
+                        callbackExecutor.execute(() -> listener.onCatalogUpdated(version, changed));
+                    }
+                })
+                .addOnFailureListener(diskExecutor, e -> Log.w(TAG, "Catalog sync failed, keeping local snapshot.", e));
+    }
+
+    private static List<CatalogChange> toChanges(QuerySnapshot snapshot) {
+        List<CatalogChange> changes = new ArrayList<>(snapshot.size());
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            Timestamp updatedAtTimestamp = document.getTimestamp("updatedAt");
+            if (updatedAtTimestamp == null) {
+                continue;
+            }
+            long updatedAt = updatedAtTimestamp.toDate().getTime();
+            if (Boolean.TRUE.equals(document.getBoolean("deleted"))) {
+                changes.add(CatalogChange.delete(document.getId(), updatedAt));
+                continue;
+            }
+            Long sortKey = document.getLong("sortKey");
+            changes.add(CatalogChange.upsert(ItemCodec.decode(document), sortKey != null ? sortKey : Long.MAX_VALUE, updatedAt));
+        }
+        return changes;
+    }
+}
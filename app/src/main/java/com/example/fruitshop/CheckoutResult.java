@@ -0,0 +1,76 @@
+package com.example.fruitshop;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class CheckoutResult {
+
+    public enum Status {
+        /** The order was written and the cart cleared. */
+        PLACED,
+        /** An order with this idempotency key already exists, so nothing was written. */
+        ALREADY_PLACED,
+        /** Some lines no longer match the catalog; see {@link #getPriceChanges()} and {@link #getUnavailableItemIds()}. */
+        ITEMS_CHANGED,
+        /** The cart on the server does not match the snapshot being checked out. */
+        CART_CHANGED,
+        /** The cart has more lines than one checkout commit can clear. */
+        TOO_LARGE
+    }
+
+    private final Status status;
+    private final Order order;
+    private final List<PriceChange> priceChanges;
+    private final List<String> unavailableItemIds;
+    private final int attempts;
+
+    private CheckoutResult(Status status, Order order, List<PriceChange> priceChanges, List<String> unavailableItemIds, int attempts) {
+        this.status = status;
+        this.order = order;
+        this.priceChanges = priceChanges;
+        this.unavailableItemIds = unavailableItemIds;
+        this.attempts = attempts;
+    }
+
+    static CheckoutResult placed(Order order, int attempts) {
+        return new CheckoutResult(Status.PLACED, order, Collections.emptyList(), Collections.emptyList(), attempts);
+    }
+
+    static CheckoutResult alreadyPlaced(Order order, int attempts) {
+        return new CheckoutResult(Status.ALREADY_PLACED, order, Collections.emptyList(), Collections.emptyList(), attempts);
+    }
+
+    static CheckoutResult itemsChanged(List<PriceChange> priceChanges, List<String> unavailableItemIds) {
+        return new CheckoutResult(Status.ITEMS_CHANGED, null, Collections.unmodifiableList(priceChanges), Collections.unmodifiableList(unavailableItemIds), 0);
+    }
+
+    static CheckoutResult cartChanged(int attempts) {
+        return new CheckoutResult(Status.CART_CHANGED, null, Collections.emptyList(), Collections.emptyList(), attempts);
+    }
+
+    static CheckoutResult tooLarge() {
+        return new CheckoutResult(Status.TOO_LARGE, null, Collections.emptyList(), Collections.emptyList(), 0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /** The placed order for {@link Status#PLACED} and {@link Status#ALREADY_PLACED}, otherwise null. */
+    public Order getOrder() {
+        return order;
+    }
+
+    public List<PriceChange> getPriceChanges() {
+        return priceChanges;
+    }
+
+    public List<String> getUnavailableItemIds() {
+        return unavailableItemIds;
+    }
+
+    /** How many times the transaction ran; anything above one was a contention retry. */
+    public int getAttempts() {
+        return attempts;
+    }
+}
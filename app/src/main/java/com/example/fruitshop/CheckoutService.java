@@ -0,0 +1,193 @@
+package com.example.fruitshop;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns a cart snapshot into orders/{orderId}. Prices and stock are checked first, with plain
+ * server reads; the transaction then only reads the user's own documents: it checks the
+ * idempotency key and the cart summary, writes the order, deletes the lines, resets the summary
+ * and takes the ordered quantities off the inventory shards. Product documents are never read in
+ * the transaction, so many users checking out the same products do not contend with each other.
+ * The stock left is rolled up for browsing once the order is placed.
+ */
+public class CheckoutService {
+
+    private static final String TAG = "CheckoutService";
+    private static final String ORDERS = "orders";
+    // Each line is deleted and may decrement one inventory shard, next to the order and the summary, within 500 writes.
+    static final int MAX_LINES = 249;
+
+    private final FirebaseFirestore db;
+    private final CartWriter cartWriter;
+    private final CatalogPrices catalogPrices;
+    private final InventoryCounter inventory;
+    private final Executor executor;
+
+    public CheckoutService(FirebaseFirestore db, InventoryCounter inventory, Executor executor) {
+        this.db = db;
+        this.cartWriter = new CartWriter(db);
+        this.catalogPrices = new CatalogPrices(db, executor);
+        this.inventory = inventory;
+        this.executor = executor;
+    }
+
+    public DocumentReference orderRef(String orderId) {
+        return db.collection(ORDERS).document(orderId);
+    }
+
+    public Task<CheckoutResult> placeOrder(String orderId, String userId, List<CartItem> lines) {
+        if (lines.isEmpty()) {
+            return Tasks.forResult(CheckoutResult.cartChanged(0));
+        }
+        if (lines.size() > MAX_LINES) {
+            return Tasks.forResult(CheckoutResult.tooLarge());
+        }
+        List<String> itemIds = new ArrayList<>(lines.size());
+        for (CartItem line : lines) {
+            itemIds.add(line.getItemId());
+        }
+        Task<Map<String, Item>> catalog = catalogPrices.fetch(itemIds);
+        // Stock is read fresh here; the cache only serves browsing.
+        Task<Map<String, StockLevel>> stock = inventory.getStock(itemIds, 0);
+        return Tasks.whenAllComplete(catalog, stock).continueWithTask(executor, task -> {
+            if (!catalog.isSuccessful()) {
+                return Tasks.forException(catalog.getException());
+            }
+            if (!stock.isSuccessful()) {
+                return Tasks.forException(stock.getException());
+            }
+            CheckoutResult changed = CheckoutValidator.revalidate(lines, catalog.getResult(), stock.getResult());
+            if (changed != null) {
+                Log.d(TAG, "Checkout " + orderId + " stopped: " + changed.getPriceChanges().size() + " repriced, " + changed.getUnavailableItemIds().size() + " unavailable.");
+                return Tasks.forResult(changed);
+            }
+            return commit(orderId, userId, lines, stock.getResult(), null);
+        });
+    }
+
+    /**
+     * {@code verified} is null on the first pass. If the summary then disagrees with the snapshot,
+     * the server's lines are listed and, when they match, the commit runs again with the summary
+     * seen before the listing; it only goes through if that summary is still unchanged.
+     */
+    private Task<CheckoutResult> commit(String orderId, String userId, List<CartItem> lines, Map<String, StockLevel> stock, CartSummary verified) {
+        DocumentReference orderRef = orderRef(orderId);
+        DocumentReference cartRef = cartWriter.cartRef(userId);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean summaryDrifted = new AtomicBoolean();
+        long start = System.nanoTime();
+        return db.runTransaction(transaction -> {
+            int attempt = attempts.incrementAndGet();
+            summaryDrifted.set(false);
+            DocumentSnapshot existing = transaction.get(orderRef);
+            if (existing.exists()) {
+                return CheckoutResult.alreadyPlaced(Order.decode(existing), attempt);
+            }
+            CartSummary summary = CartSummary.decode(transaction.get(cartRef));
+            if (!CheckoutValidator.matchesSummary(summary.getLineCount(), summary.getUnitCount(), summary.getSubtotalCents(), lines)
+                    && (!summary.equals(verified) || !linesMatch(transaction, userId, lines))) {
+                summaryDrifted.set(verified == null);
+                return CheckoutResult.cartChanged(attempt);
+            }
+
+            Order order = new Order(orderId, userId, lines, null);
+            transaction.set(orderRef, Order.encode(order));
+            for (CartItem line : lines) {
+                transaction.delete(cartWriter.cartItemRef(userId, line.getItemId()));
+                StockLevel level = stock.get(line.getItemId());
+                if (level != null) {
+                    inventory.decrement(transaction, level, line.getQuantity());
+                }
+            }
+            transaction.set(cartRef, CartSummary.encodeCleared(orderId), SetOptions.merge());
+            return CheckoutResult.placed(order, attempt);
+        }).continueWithTask(executor, task -> {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            Log.d(TAG, "Checkout " + orderId + " finished in " + elapsedMs + " ms after " + attempts.get() + " attempts, success=" + task.isSuccessful());
+            if (!task.isSuccessful()) {
+                return task;
+            }
+            if (task.getResult().getStatus() == CheckoutResult.Status.PLACED) {
+                inventory.invalidate(stock.keySet());
+                inventory.rollUp(remainingStock(lines, stock));
+            } else if (summaryDrifted.get()) {
+                Log.d(TAG, "Cart summary for " + userId + " does not match checkout " + orderId + ", comparing every line.");
+                return verifyLines(userId, lines).continueWithTask(executor, verify -> {
+                    if (!verify.isSuccessful()) {
+                        return Tasks.forException(verify.getException());
+                    }
+                    return verify.getResult() == null ? task : commit(orderId, userId, lines, stock, verify.getResult());
+                });
+            }
+            return task;
+        });
+    }
+
+    /**
+     * Slow path for carts whose summary predates it or has drifted. Reads the summary and then every
+     * line on the server, and returns that summary if the lines are exactly the snapshot's, or null.
+     * Every cart write also moves the summary, so an unchanged summary at commit time means no line
+     * was added or edited after the listing, including from another device.
+     */
+    private Task<CartSummary> verifyLines(String userId, List<CartItem> lines) {
+        return cartWriter.cartRef(userId).get(Source.SERVER).continueWithTask(executor, summaryTask -> {
+            if (!summaryTask.isSuccessful()) {
+                return Tasks.forException(summaryTask.getException());
+            }
+            CartSummary summary = CartSummary.decode(summaryTask.getResult());
+            return cartWriter.cartItemsRef(userId).get(Source.SERVER).continueWithTask(executor, linesTask -> {
+                if (!linesTask.isSuccessful()) {
+                    return Tasks.forException(linesTask.getException());
+                }
+                List<CartItem> serverLines = new ArrayList<>(linesTask.getResult().size());
+                for (DocumentSnapshot document : linesTask.getResult().getDocuments()) {
+                    serverLines.add(CartItemCodec.decode(document));
+                }
+                return Tasks.forResult(CheckoutValidator.sameLines(lines, serverLines) ? summary : null);
+            });
+        });
+    }
+
+    private static Map<String, Long> remainingStock(List<CartItem> lines, Map<String, StockLevel> stock) {
+        Map<String, Long> remaining = new HashMap<>();
+        for (CartItem line : lines) {
+            StockLevel level = stock.get(line.getItemId());
+            if (level != null) {
+                remaining.put(line.getItemId(), Math.max(0, level.getAvailable() - line.getQuantity()));
+            }
+        }
+        return remaining;
+    }
+
+    private boolean linesMatch(Transaction transaction, String userId, List<CartItem> lines) throws FirebaseFirestoreException {
+        for (CartItem line : lines) {
+            DocumentSnapshot document = transaction.get(cartWriter.cartItemRef(userId, line.getItemId()));
+            if (!document.exists()) {
+                return false;
+            }
+            CartItem remote = CartItemCodec.decode(document);
+            if (remote.getQuantity() != line.getQuantity() || !remote.getPrice().equals(line.getPrice())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.fruitshop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks a cart snapshot against the catalog and against the server's cart summary before an
+ * order is written.
+ */
+final class CheckoutValidator {
+
+    private CheckoutValidator() {
+    }
+
+    /**
+     * Returns null when every line still matches the catalog and is in stock, otherwise the lines to
+     * reprice and the items that can no longer be bought. Lines without a catalog entry keep their
+     * price, since they come from the bundled catalog, which only changes with the app; lines
+     * without a stock level are not tracked.
+     */
+    static CheckoutResult revalidate(List<CartItem> lines, Map<String, Item> catalog, Map<String, StockLevel> stock) {
+        List<PriceChange> repriced = new ArrayList<>();
+        List<String> unavailable = new ArrayList<>();
+        for (CartItem line : lines) {
+            StockLevel level = stock.get(line.getItemId());
+            if (level != null && !level.canFulfil(line.getQuantity())) {
+                unavailable.add(line.getItemId());
+                continue;
+            }
+            if (!catalog.containsKey(line.getItemId())) {
+                continue;
+            }
+            Item item = catalog.get(line.getItemId());
+            if (item == null || !item.isAvailable()) {
+                unavailable.add(line.getItemId());
+            } else if (!item.getPrice().equals(line.getPrice())) {
+                repriced.add(new PriceChange(line, item.getPrice()));
+            }
+        }
+        if (repriced.isEmpty() && unavailable.isEmpty()) {
+            return null;
+        }
+        return CheckoutResult.itemsChanged(repriced, unavailable);
+    }
+
+    static boolean matchesSummary(long lineCount, long unitCount, long subtotalCents, List<CartItem> lines) {
+        long units = 0;
+        long subtotal = 0;
+        for (CartItem line : lines) {
+            units += line.getQuantity();
+            subtotal += line.getPrice().getCents() * line.getQuantity();
+        }
+        return lineCount == lines.size() && unitCount == units && subtotalCents == subtotal;
+    }
+
+    /** True when both lists hold the same item ids with the same quantities and prices, in any order. */
+    static boolean sameLines(List<CartItem> lines, List<CartItem> serverLines) {
+        if (lines.size() != serverLines.size()) {
+            return false;
+        }
+        Map<String, CartItem> byItemId = new HashMap<>(lines.size() * 2);
+        for (CartItem line : lines) {
+            byItemId.put(line.getItemId(), line);
+        }
+        for (CartItem serverLine : serverLines) {
+            CartItem line = byItemId.remove(serverLine.getItemId());
+            if (line == null || line.getQuantity() != serverLine.getQuantity() || !line.getPrice().equals(serverLine.getPrice())) {
+                return false;
+            }
+        }
+        return byItemId.isEmpty();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fruitshop;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+/**
+ * Resolves an itemId to its drawable once and caches the result by the id's hash. Catalog ids are
+ * seeded from the generated {@link CatalogIndex}, so only unknown ids ever reach getIdentifier.
+ * Catalog pages resolve on a background thread while cart rows resolve on the main thread, so
+ * lookups are synchronized around the caches.
+ */
+public class DrawableResolver {
+
+    private static final String TAG = "DrawableResolver";
+
+    private static DrawableResolver instance;
+
+    private final Resources resources;
+    private final String packageName;
+    private final SparseIntArray drawablesByHash = new SparseIntArray();
+    private final SparseArray<String> idsByHash = new SparseArray<>();
+
+    public static synchronized DrawableResolver getInstance(Context context) {
+        if (instance == null) {
+            instance = new DrawableResolver(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DrawableResolver(Context context) {
+        this.resources = context.getResources();
+        this.packageName = context.getPackageName();
+        for (int i = 0; i < CatalogIndex.SIZE; i++) {
+            put(CatalogIndex.ITEM_IDS[i], CatalogIndex.IMAGE_IDS[i]);
+        }
+    }
+
+    public synchronized int resolve(String itemId) {
+        if (itemId == null || itemId.isEmpty()) {
+            return R.drawable.default_image_placeholder;
+        }
+        int hash = itemId.hashCode();
+        String cachedId = idsByHash.get(hash);
+        if (cachedId != null && cachedId.equals(itemId)) {
+            return drawablesByHash.get(hash);
+        }
+
+        int drawableId = resources.getIdentifier(itemId, "drawable", packageName);
+        if (drawableId == 0) {
+            Log.w(TAG, "No drawable for itemId '" + itemId + "', using placeholder.");
+            drawableId = R.drawable.default_image_placeholder;
+        }
+        if (cachedId == null) {
+            put(itemId, drawableId);
+        }
+        return drawableId;
+    }
+
+    private void put(String itemId, int drawableId) {
+        int hash = itemId.hashCode();
+        idsByHash.put(hash, itemId);
+        drawablesByHash.put(hash, drawableId);
+    }
+}
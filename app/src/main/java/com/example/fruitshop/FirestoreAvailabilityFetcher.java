@@ -0,0 +1,120 @@
+package com.example.fruitshop;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Listens to catalog/{itemId} for one chunk of ids with a single whereIn query, and reads their
+ * rolled-up stock once with another, so a chunk costs two requests however many rows it covers.
+ * Results are delivered on {@code callbackExecutor} whenever either side changes, once both have
+ * arrived.
+ */
+public class FirestoreAvailabilityFetcher implements AvailabilityTracker.Fetcher {
+
+    private static final String TAG = "AvailabilityFetcher";
+    private static final String CATALOG = "catalog";
+
+    private final FirebaseFirestore db;
+    private final InventoryCounter inventory;
+    private final Executor callbackExecutor;
+
+    public FirestoreAvailabilityFetcher(FirebaseFirestore db, InventoryCounter inventory, Executor callbackExecutor) {
+        this.db = db;
+        this.inventory = inventory;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public AvailabilityTracker.Subscription subscribe(List<String> itemIds, AvailabilityTracker.Callback callback) {
+        ChunkSubscription subscription = new ChunkSubscription(itemIds, callback);
+        subscription.registration = db.collection(CATALOG).whereIn(FieldPath.documentId(), itemIds).addSnapshotListener(callbackExecutor, (snapshot, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Availability listener failed for " + itemIds.size() + " items.", e);
+                subscription.fail(e);
+                return;
+            }
+            if (snapshot == null) {
+                return;
+            }
+            Map<String, DocumentSnapshot> documents = new HashMap<>();
+            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                documents.put(document.getId(), document);
+            }
+            subscription.catalog = documents;
+            subscription.emit();
+        });
+        inventory.getRolledUpStock(itemIds, AvailabilityTracker.TTL_MS).addOnCompleteListener(callbackExecutor, task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Stock read failed for " + itemIds.size() + " items.", task.getException());
+                subscription.fail(task.getException());
+                return;
+            }
+            subscription.stock = task.getResult();
+            subscription.emit();
+        });
+        return subscription;
+    }
+
+    private static class ChunkSubscription implements AvailabilityTracker.Subscription {
+        final List<String> itemIds;
+        final AvailabilityTracker.Callback callback;
+        ListenerRegistration registration;
+        Map<String, DocumentSnapshot> catalog;
+        Map<String, StockLevel> stock;
+        boolean done;
+
+        ChunkSubscription(List<String> itemIds, AvailabilityTracker.Callback callback) {
+            this.itemIds = itemIds;
+            this.callback = callback;
+        }
+
+        void emit() {
+            if (done || catalog == null || stock == null) {
+                return;
+            }
+            List<Availability> results = new ArrayList<>(itemIds.size());
+            for (String itemId : itemIds) {
+                results.add(toAvailability(itemId, catalog.get(itemId), stock.get(itemId)));
+            }
+            callback.onAvailability(results);
+        }
+
+        void fail(Exception e) {
+            if (!done) {
+                cancel();
+                callback.onError(e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            if (registration != null) {
+                registration.remove();
+            }
+        }
+    }
+
+    private static Availability toAvailability(String itemId, DocumentSnapshot document, StockLevel level) {
+        long stock = level != null ? level.getAvailable() : Availability.UNKNOWN;
+        if (document == null) {
+            return new Availability(itemId, Availability.UNKNOWN, true, stock);
+        }
+        if (Boolean.TRUE.equals(document.getBoolean("deleted"))) {
+            return new Availability(itemId, Availability.UNKNOWN, false, stock);
+        }
+        Long priceCents = document.getLong(ItemCodec.PRICE_CENTS);
+        Boolean available = document.getBoolean(ItemCodec.AVAILABLE);
+        return new Availability(itemId, priceCents != null ? priceCents : Availability.UNKNOWN, available == null || available, stock);
+    }
+}
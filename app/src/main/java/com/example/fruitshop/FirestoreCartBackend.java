@@ -0,0 +1,103 @@
+package com.example.fruitshop;
+
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Commits each outbox batch in one transaction that first reads every line it touches. Replaying a
+ * batch after an ambiguous failure therefore skips the operations already applied, and the summary
+ * moves by what the lines actually became; see {@link CartLineMerge}. Lines are read one at a time,
+ * so a batch costs a round trip per line on top of the commit.
+ */
+public class FirestoreCartBackend implements CartBackend {
+
+    private static final String TAG = "FirestoreCartBackend";
+
+    private final FirebaseFirestore db;
+    private final CartWriter cartWriter;
+    private final Executor callbackExecutor;
+
+    public FirestoreCartBackend(FirebaseFirestore db, Executor callbackExecutor) {
+        this.db = db;
+        this.cartWriter = new CartWriter(db);
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public void apply(List<CartOperation> operations, Callback callback) {
+        Log.d(TAG, "Committing " + operations.size() + " cart operations.");
+        db.runTransaction(transaction -> {
+            CartLineMerge merge = new CartLineMerge();
+            for (CartOperation operation : operations) {
+                if (!merge.hasStored(operation.getUserId(), operation.getItemId())) {
+                    DocumentSnapshot document = transaction.get(cartWriter.cartItemRef(operation.getUserId(), operation.getItemId()));
+                    merge.putStored(operation.getUserId(), operation.getItemId(), storedLine(document));
+                }
+            }
+
+            int applied = 0;
+            for (CartOperation operation : operations) {
+                CartLineMerge.Line before = merge.get(operation.getUserId(), operation.getItemId());
+                CartLineMerge.Line after = merge.apply(operation);
+                if (after == before) {
+                    continue;
+                }
+                applied++;
+                DocumentReference itemRef = cartWriter.cartItemRef(operation.getUserId(), operation.getItemId());
+                if (after == null) {
+                    transaction.delete(itemRef);
+                } else {
+                    transaction.set(itemRef, CartItemCodec.encode(operation, after.quantity, before == null), SetOptions.merge());
+                }
+            }
+            for (Map.Entry<String, long[]> entry : merge.getSummaryDeltas().entrySet()) {
+                long[] delta = entry.getValue();
+                transaction.set(cartWriter.cartRef(entry.getKey()), CartSummary.encodeIncrement(delta[0], delta[1], delta[2]), SetOptions.merge());
+            }
+            return applied;
+        }).addOnSuccessListener(callbackExecutor, applied -> {
+            Log.d(TAG, "SUCCESS: Committed " + operations.size() + " cart operations, " + (operations.size() - applied) + " already applied.");
+            callback.onSuccess();
+        }).addOnFailureListener(callbackExecutor, e -> {
+            Log.e(TAG, "FAILURE: Could not commit " + operations.size() + " cart operations.", e);
+            if (isPermanent(e)) {
+                callback.onRejected(e);
+            } else {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    private static CartLineMerge.Line storedLine(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        CartItem line = CartItemCodec.decode(document);
+        return new CartLineMerge.Line(line.getQuantity(), line.getPrice().getCents(), document.getString(CartItemCodec.LAST_OP_ID));
+    }
+
+    private static boolean isPermanent(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return false;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case PERMISSION_DENIED:
+            case INVALID_ARGUMENT:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+            case UNAUTHENTICATED:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -2,24 +2,67 @@ package com.example.fruitshop;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HomePageActivity extends AppCompatActivity {
 
     private static final String LOG_TAG = HomePageActivity.class.getSimpleName();
+    private static final long SEARCH_DEBOUNCE_MS = 250;
     private RecyclerView itemsRecyclerView;
     private ItemAdapter itemAdapter;
+    private CatalogImageLoader imageLoader;
+    private AvailabilityTracker availabilityTracker;
     private List<Item> itemsList;
+    private LocalCatalogStore catalogStore;
+    private CatalogSync catalogSync;
+    private TextView cartBadgeTextView;
+    private long cartUnitCount;
+    private final ExecutorService catalogExecutor = Executors.newSingleThreadExecutor();
+    private final Executor catalogWork = command -> {
+        if (!catalogExecutor.isShutdown()) {
+            catalogExecutor.execute(command);
+        }
+    };
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile CatalogIndexes catalogIndexes;
+    private CatalogSource shownSource;
+    private String pendingQuery = "";
+    private int[] searchResults;
+    private CatalogFilter.Query filterQuery = CatalogFilter.Query.all();
+    private int visibleGeneration;
+    private int catalogGeneration;
+    private final Runnable runSearch = this::runSearch;
+    private final Runnable resetAvailability = () -> availabilityTracker.onDataSetChanged();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -31,16 +74,331 @@ public class HomePageActivity extends AppCompatActivity {
         itemsRecyclerView = findViewById(R.id.itemsRecyclerView);
         itemsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
 
-        itemsList = new ArrayList<>();
-        loadItemsFromResources();
-
-        itemAdapter = new ItemAdapter(itemsList);
+        imageLoader = new CatalogImageLoader(this);
+        itemsList = Collections.emptyList();
+        itemAdapter = new ItemAdapter(itemsList, imageLoader);
         itemsRecyclerView.setAdapter(itemAdapter);
+        itemsRecyclerView.addOnScrollListener(imageLoader);
+        setupAvailabilityOverlay();
+
+        CartStore.getInstance(this).observe(this, snapshot -> {
+            cartUnitCount = snapshot.getUnitCount();
+            updateCartBadge();
+        });
+
+        catalogStore = new LocalCatalogStore(new CatalogDatabaseHelper(this), DrawableResolver.getInstance(this));
+        catalogSync = new CatalogSync(FirebaseFirestore.getInstance(), catalogStore, catalogWork, ContextCompat.getMainExecutor(this));
+        catalogExecutor.execute(() -> {
+            loadCatalog();
+            catalogSync.sync((snapshotVersion, changedCount) -> {
+                Log.d(LOG_TAG, "Catalog snapshot " + snapshotVersion + " has " + changedCount + " remote changes, reloading.");
+                catalogWork.execute(this::loadCatalog);
+            });
+        });
+    }
+
+    private void setupAvailabilityOverlay() {
+        availabilityTracker = new AvailabilityTracker(new AvailabilityTracker.Host() {
+            @Override
+            public int getItemCount() {
+                return itemAdapter.getItemCount();
+            }
+
+            @Override
+            public String itemIdAt(int position) {
+                Item item = itemAdapter.peekItemAt(position);
+                return item != null ? item.getItemId() : null;
+            }
+
+            @Override
+            public void onAvailabilityChanged(int position) {
+                itemAdapter.notifyItemChanged(position, ItemAdapter.PAYLOAD_AVAILABILITY);
+            }
+        }, new FirestoreAvailabilityFetcher(FirebaseFirestore.getInstance(), InventoryCounter.getInstance(), ContextCompat.getMainExecutor(this)), SystemClock::elapsedRealtime);
+        itemAdapter.setAvailabilityTracker(availabilityTracker);
+
+        // Rows that only fly past during a fling are not fetched; the range is read again once it settles.
+        itemsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_SETTLING) {
+                    updateVisibleRange();
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    updateVisibleRange();
+                }
+            }
+        });
+        itemAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                availabilityTracker.onDataSetChanged();
+            }
+
+            // One result update can dispatch many ranges; the tracker re-reads the rows once after them.
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mainHandler.removeCallbacks(resetAvailability);
+                mainHandler.post(resetAvailability);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mainHandler.removeCallbacks(resetAvailability);
+                mainHandler.post(resetAvailability);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                if (payload != ItemAdapter.PAYLOAD_AVAILABILITY) {
+                    updateVisibleRange();
+                }
+            }
+        });
+    }
+
+    private void updateVisibleRange() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) itemsRecyclerView.getLayoutManager();
+        if (layoutManager != null) {
+            availabilityTracker.onVisibleRange(layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+        }
+    }
+
+    private void loadCatalog() {
+        catalogStore.seedFromBundle();
+        CatalogSource source = new LocalCatalogSource(catalogStore);
+        mainHandler.post(() -> showCatalog(source));
+        catalogIndexes = new CatalogIndexes(source, CatalogSearchIndex.build(source), CatalogFilter.build(source));
+        mainHandler.post(this::refreshVisiblePositions);
+    }
+
+    private void showCatalog(CatalogSource source) {
+        int generation = ++catalogGeneration;
+        PagedCatalog catalog = new PagedCatalog(source, catalogWork, ContextCompat.getMainExecutor(this), new PagedCatalog.Listener() {
+            @Override
+            public void onPageLoaded(int start, int count) {
+                if (generation == catalogGeneration) {
+                    itemAdapter.notifyItemRangeChanged(start, count);
+                }
+            }
+
+            @Override
+            public void onPageFailed(int start, int count, Exception e) {
+                Log.e(LOG_TAG, "Failed to load catalog rows " + start + "-" + (start + count - 1), e);
+            }
+        });
+        Log.d(LOG_TAG, "Paged catalog opened with " + catalog.size() + " items.");
+        itemsList = catalog;
+        shownSource = source;
+        searchResults = null;
+        visibleGeneration++;
+        itemAdapter.setItems(catalog, null);
+    }
+
+    private void refreshVisiblePositions() {
+        if (!pendingQuery.isEmpty()) {
+            runSearch();
+        } else if (!filterQuery.isAll()) {
+            applyFilter(filterQuery);
+        }
+    }
+
+    private void onSearchQueryChanged(String query) {
+        pendingQuery = query == null ? "" : query.trim();
+        mainHandler.removeCallbacks(runSearch);
+        if (pendingQuery.isEmpty()) {
+            searchResults = null;
+            applyFilter(filterQuery);
+            return;
+        }
+        mainHandler.postDelayed(runSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    // Positions only mean something against the catalog on screen; until its indexes are built the
+    // search or filter waits for refreshVisiblePositions.
+    private CatalogIndexes shownIndexes() {
+        CatalogIndexes indexes = catalogIndexes;
+        return indexes != null && indexes.source == shownSource ? indexes : null;
+    }
+
+    private void runSearch() {
+        CatalogIndexes indexes = shownIndexes();
+        if (indexes == null) {
+            return;
+        }
+        String query = pendingQuery;
+        CatalogFilter.Query filter = filterQuery;
+        int[] shown = itemAdapter.getVisiblePositions();
+        int generation = ++visibleGeneration;
+        catalogWork.execute(() -> {
+            int[] results = indexes.searchIndex.search(query);
+            int[] visible = filter.isAll() ? results : indexes.filter.apply(filter, results);
+            VisiblePositionsDiff diff = VisiblePositionsDiff.calculate(shown, visible, indexes.size);
+            mainHandler.post(() -> {
+                if (generation == visibleGeneration && indexes == shownIndexes()) {
+                    searchResults = results;
+                    itemAdapter.setVisiblePositions(visible, diff);
+                    Log.d(LOG_TAG, "Search '" + query + "' matched " + results.length + " items, " + visible.length + " after filters.");
+                }
+            });
+        });
+    }
+
+    private void applyFilter(CatalogFilter.Query query) {
+        filterQuery = query;
+        CatalogIndexes indexes = shownIndexes();
+        if (indexes == null) {
+            return;
+        }
+        int[] within = searchResults;
+        int[] shown = itemAdapter.getVisiblePositions();
+        int generation = ++visibleGeneration;
+        catalogWork.execute(() -> {
+            int[] visible = query.isAll() ? within : indexes.filter.apply(query, within);
+            VisiblePositionsDiff diff = VisiblePositionsDiff.calculate(shown, visible, indexes.size);
+            mainHandler.post(() -> {
+                if (generation == visibleGeneration && indexes == shownIndexes()) {
+                    itemAdapter.setVisiblePositions(visible, diff);
+                }
+            });
+        });
+    }
+
+    private void showFilterDialog() {
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_filter, null);
+        CheckBox fruitCheckBox = dialogView.findViewById(R.id.filterFruitCheckBox);
+        CheckBox vegetableCheckBox = dialogView.findViewById(R.id.filterVegetableCheckBox);
+        CheckBox availableCheckBox = dialogView.findViewById(R.id.filterAvailableCheckBox);
+        EditText minPriceEditText = dialogView.findViewById(R.id.filterMinPriceEditText);
+        EditText maxPriceEditText = dialogView.findViewById(R.id.filterMaxPriceEditText);
+        RadioGroup sortRadioGroup = dialogView.findViewById(R.id.filterSortRadioGroup);
+
+        fruitCheckBox.setChecked(filterQuery.getCategories().contains(Item.Category.FRUIT));
+        vegetableCheckBox.setChecked(filterQuery.getCategories().contains(Item.Category.VEGETABLE));
+        availableCheckBox.setChecked(filterQuery.isAvailableOnly());
+        if (filterQuery.getMinPriceCents() > 0) {
+            minPriceEditText.setText(BigDecimal.valueOf(filterQuery.getMinPriceCents(), 2).toPlainString());
+        }
+        if (filterQuery.getMaxPriceCents() != Long.MAX_VALUE) {
+            maxPriceEditText.setText(BigDecimal.valueOf(filterQuery.getMaxPriceCents(), 2).toPlainString());
+        }
+        sortRadioGroup.check(sortButtonId(filterQuery.getSort()));
+
+        new AlertDialog.Builder(this).setTitle(R.string.filter_and_sort).setView(dialogView).setPositiveButton(R.string.apply, (dialog, which) -> {
+            Set<Item.Category> categories = EnumSet.noneOf(Item.Category.class);
+            if (fruitCheckBox.isChecked()) {
+                categories.add(Item.Category.FRUIT);
+            }
+            if (vegetableCheckBox.isChecked()) {
+                categories.add(Item.Category.VEGETABLE);
+            }
+            try {
+                long minCents = parsePriceCents(minPriceEditText, 0);
+                long maxCents = parsePriceCents(maxPriceEditText, Long.MAX_VALUE);
+                applyFilter(new CatalogFilter.Query(categories, minCents, maxCents, availableCheckBox.isChecked(), sortForButton(sortRadioGroup.getCheckedRadioButtonId())));
+            } catch (NumberFormatException e) {
+                Toast.makeText(this, "Invalid price.", Toast.LENGTH_SHORT).show();
+            }
+        }).setNeutralButton(R.string.clear, (dialog, which) -> applyFilter(CatalogFilter.Query.all())).setNegativeButton("Cancel", null).show();
+    }
+
+    private static long parsePriceCents(EditText editText, long emptyValue) {
+        String text = editText.getText().toString().trim();
+        return text.isEmpty() ? emptyValue : Money.parse(text).getCents();
+    }
+
+    private static int sortButtonId(CatalogFilter.Sort sort) {
+        switch (sort) {
+            case PRICE_LOW_TO_HIGH:
+                return R.id.sortPriceLowRadioButton;
+            case PRICE_HIGH_TO_LOW:
+                return R.id.sortPriceHighRadioButton;
+            case NAME:
+                return R.id.sortNameRadioButton;
+            default:
+                return R.id.sortCatalogRadioButton;
+        }
+    }
+
+    private static CatalogFilter.Sort sortForButton(int buttonId) {
+        if (buttonId == R.id.sortPriceLowRadioButton) {
+            return CatalogFilter.Sort.PRICE_LOW_TO_HIGH;
+        } else if (buttonId == R.id.sortPriceHighRadioButton) {
+            return CatalogFilter.Sort.PRICE_HIGH_TO_LOW;
+        } else if (buttonId == R.id.sortNameRadioButton) {
+            return CatalogFilter.Sort.NAME;
+        }
+        return CatalogFilter.Sort.CATALOG;
+    }
+
+    private void updateCartBadge() {
+        if (cartBadgeTextView == null) {
+            return;
+        }
+        if (cartUnitCount <= 0) {
+            cartBadgeTextView.setVisibility(View.GONE);
+            return;
+        }
+        cartBadgeTextView.setText(cartUnitCount > 99 ? getString(R.string.cart_badge_overflow) : String.valueOf(cartUnitCount));
+        cartBadgeTextView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        CartRepository.getInstance(this).flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mainHandler.removeCallbacksAndMessages(null);
+        availabilityTracker.release();
+        catalogExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (imageLoader != null) {
+            imageLoader.trimMemory(level);
+        }
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.home_page_menu, menu);
+
+        MenuItem cartMenuItem = menu.findItem(R.id.cart_menu_item);
+        View cartActionView = cartMenuItem.getActionView();
+        if (cartActionView != null) {
+            cartActionView.setOnClickListener(v -> onOptionsItemSelected(cartMenuItem));
+            cartBadgeTextView = cartActionView.findViewById(R.id.cartBadgeTextView);
+            updateCartBadge();
+        }
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.search_menu_item).getActionView();
+        if (searchView != null) {
+            searchView.setQueryHint(getString(R.string.search_hint));
+            searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+                @Override
+                public boolean onQueryTextSubmit(String query) {
+                    onSearchQueryChanged(query);
+                    searchView.clearFocus();
+                    return true;
+                }
+
+                @Override
+                public boolean onQueryTextChange(String newText) {
+                    onSearchQueryChanged(newText);
+                    return true;
+                }
+            });
+        }
         return true;
     }
 
@@ -49,7 +407,10 @@ public class HomePageActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         int itemId = item.getItemId();
 
-        if (itemId == R.id.cart_menu_item) {
+        if (itemId == R.id.filter_menu_item) {
+            showFilterDialog();
+            return true;
+        } else if (itemId == R.id.cart_menu_item) {
             Intent intent = new Intent(this, CartActivity.class);
             startActivity(intent);
             return true;
@@ -64,31 +425,18 @@ public class HomePageActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    private void loadItemsFromResources() {
-        String[] imageNames = getResources().getStringArray(R.array.item_images);
-        String[] descriptions = getResources().getStringArray(R.array.item_descriptions);
-        String[] prices = getResources().getStringArray(R.array.item_prices);
-        String[] details = getResources().getStringArray(R.array.item_details);
-
-        int minLength = Math.min(imageNames.length, Math.min(descriptions.length, Math.min(prices.length, details.length)));
-
-        for (int i = 0; i < minLength; i++) {
-            String itemId = imageNames[i].toLowerCase(Locale.ROOT).replaceAll("\\s+", "_");
-            String imageNameForDrawable = imageNames[i].toLowerCase(Locale.ROOT);
-            String description = descriptions[i];
-            String price = prices[i];
-            String detail = details[i];
-
-            int imageId = getResources().getIdentifier(imageNameForDrawable, "drawable", getPackageName());
-            Log.d(LOG_TAG, "ImageId for " + imageNameForDrawable + " is " + imageId + ", itemId: " + itemId);
-            if (imageId != 0) {
-                Item item = new Item(itemId, imageId, description, price, detail);
-                itemsList.add(item);
-            } else {
-                Log.e(LOG_TAG, "Could not find resource with name: " + imageNameForDrawable);
-            }
+    /** The search index and filter over one catalog source, published together so a worker never mixes generations. */
+    private static final class CatalogIndexes {
+        final CatalogSource source;
+        final CatalogSearchIndex searchIndex;
+        final CatalogFilter filter;
+        final int size;
 
+        CatalogIndexes(CatalogSource source, CatalogSearchIndex searchIndex, CatalogFilter filter) {
+            this.source = source;
+            this.searchIndex = searchIndex;
+            this.filter = filter;
+            this.size = source.size();
         }
     }
-
 }
\ No newline at end of file
@@ -0,0 +1,247 @@
+package com.example.fruitshop;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateField;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock kept as a distributed counter: inventory/{itemId} holds the shard count and
+ * inventory/{itemId}/shards/{n} hold parts of the stock, so a hot product spreads its writes over
+ * several documents instead of queueing on one. Exact reads sum the shards with one aggregation
+ * per product. For browsing, inventory/{itemId} also carries the stock rolled up after each order,
+ * which many products can share one query for. Reads are cached. Decrements are blind increments on a random shard; they take no read locks, so checkouts
+ * never retry on each other, at the price of a small oversell window between the stock check and
+ * the commit.
+ */
+public class InventoryCounter {
+
+    private static final String TAG = "InventoryCounter";
+    private static final String COLLECTION = "inventory";
+    private static final String SHARDS = "shards";
+    static final String SHARD_COUNT = "shardCount";
+    static final String COUNT = "count";
+    static final String AVAILABLE = "available";
+
+    public static final int DEFAULT_SHARD_COUNT = 10;
+    public static final long DEFAULT_MAX_AGE_MS = 30_000;
+
+    private static InventoryCounter instance;
+
+    private final FirebaseFirestore db;
+    private final Executor executor;
+    private final Map<String, StockLevel> cache = new ConcurrentHashMap<>();
+
+    /** The process-wide counter, so browsing and checkout share one stock cache. */
+    public static synchronized InventoryCounter getInstance() {
+        if (instance == null) {
+            instance = new InventoryCounter(FirebaseFirestore.getInstance(), Executors.newSingleThreadExecutor());
+        }
+        return instance;
+    }
+
+    public InventoryCounter(FirebaseFirestore db, Executor executor) {
+        this.db = db;
+        this.executor = executor;
+    }
+
+    public DocumentReference counterRef(String itemId) {
+        return db.collection(COLLECTION).document(itemId);
+    }
+
+    public DocumentReference shardRef(String itemId, int shard) {
+        return counterRef(itemId).collection(SHARDS).document(String.valueOf(shard));
+    }
+
+    /** Creates or resets the counter of a product, spreading the stock evenly over its shards. */
+    public Task<Void> createCounter(String itemId, int shardCount, long stock) {
+        WriteBatch batch = db.batch();
+        Map<String, Object> config = new HashMap<>();
+        config.put(SHARD_COUNT, shardCount);
+        config.put(AVAILABLE, stock);
+        batch.set(counterRef(itemId), config);
+        for (int shard = 0; shard < shardCount; shard++) {
+            long share = stock / shardCount + (shard < stock % shardCount ? 1 : 0);
+            batch.set(shardRef(itemId, shard), Collections.singletonMap(COUNT, share));
+        }
+        cache.remove(itemId);
+        Log.d(TAG, "Setting stock of " + itemId + " to " + stock + " over " + shardCount + " shards.");
+        return batch.commit();
+    }
+
+    /**
+     * Returns the stock of every tracked product among {@code itemIds}; untracked products are left
+     * out. Levels read within {@code maxAgeMs} come from the cache.
+     */
+    public Task<Map<String, StockLevel>> getStock(Collection<String> itemIds, long maxAgeMs) {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, StockLevel> levels = new HashMap<>();
+        List<Task<StockLevel>> fetches = new ArrayList<>();
+        for (String itemId : itemIds) {
+            StockLevel cached = cache.get(itemId);
+            if (cached != null && cached.isFresh(now, maxAgeMs)) {
+                if (cached.isTracked()) {
+                    levels.put(itemId, cached);
+                }
+            } else {
+                fetches.add(fetch(itemId, cached));
+            }
+        }
+        if (fetches.isEmpty()) {
+            return Tasks.forResult(levels);
+        }
+        return Tasks.whenAllSuccess(fetches).continueWith(executor, task -> {
+            for (Object result : task.getResult()) {
+                StockLevel level = (StockLevel) result;
+                cache.put(level.getItemId(), level);
+                if (level.isTracked()) {
+                    levels.put(level.getItemId(), level);
+                }
+            }
+            return levels;
+        });
+    }
+
+    /**
+     * Like {@link #getStock}, but reads the rolled-up {@code available} field of inventory/{itemId}
+     * with one whereIn query per {@link CatalogPrices#MAX_IN_VALUES} ids instead of summing the
+     * shards of each product. The value trails the shards by whatever was ordered since the last
+     * roll-up, so it is only for display; checkout reads the shards. Counters that predate the
+     * roll-up are summed once and rolled up.
+     */
+    public Task<Map<String, StockLevel>> getRolledUpStock(List<String> itemIds, long maxAgeMs) {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, StockLevel> levels = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        for (String itemId : itemIds) {
+            StockLevel cached = cache.get(itemId);
+            if (cached != null && cached.isFresh(now, maxAgeMs)) {
+                if (cached.isTracked()) {
+                    levels.put(itemId, cached);
+                }
+            } else {
+                stale.add(itemId);
+            }
+        }
+        if (stale.isEmpty()) {
+            return Tasks.forResult(levels);
+        }
+        List<Task<QuerySnapshot>> queries = new ArrayList<>();
+        for (int start = 0; start < stale.size(); start += CatalogPrices.MAX_IN_VALUES) {
+            List<String> chunk = new ArrayList<>(stale.subList(start, Math.min(stale.size(), start + CatalogPrices.MAX_IN_VALUES)));
+            queries.add(db.collection(COLLECTION).whereIn(FieldPath.documentId(), chunk).get(Source.SERVER));
+        }
+        return Tasks.whenAllSuccess(queries).continueWithTask(executor, task -> {
+            long fetchedAt = SystemClock.elapsedRealtime();
+            Map<String, DocumentSnapshot> counters = new HashMap<>();
+            for (Object result : task.getResult()) {
+                for (DocumentSnapshot document : ((QuerySnapshot) result).getDocuments()) {
+                    counters.put(document.getId(), document);
+                }
+            }
+            List<Task<StockLevel>> missing = new ArrayList<>();
+            for (String itemId : stale) {
+                DocumentSnapshot counter = counters.get(itemId);
+                int shardCount = counter != null ? readShardCount(counter) : 0;
+                Long available = counter != null ? counter.getLong(AVAILABLE) : null;
+                if (shardCount > 0 && available == null) {
+                    missing.add(fetch(itemId, new StockLevel(itemId, shardCount, 0, fetchedAt)));
+                    continue;
+                }
+                StockLevel level = shardCount > 0 ? new StockLevel(itemId, shardCount, available, fetchedAt) : StockLevel.untracked(itemId, fetchedAt);
+                cache.put(itemId, level);
+                if (level.isTracked()) {
+                    levels.put(itemId, level);
+                }
+            }
+            if (missing.isEmpty()) {
+                return Tasks.forResult(levels);
+            }
+            return Tasks.whenAllSuccess(missing).continueWith(executor, sumTask -> {
+                Map<String, Long> rolledUp = new HashMap<>();
+                for (Object result : sumTask.getResult()) {
+                    StockLevel level = (StockLevel) result;
+                    cache.put(level.getItemId(), level);
+                    levels.put(level.getItemId(), level);
+                    rolledUp.put(level.getItemId(), level.getAvailable());
+                }
+                rollUp(rolledUp);
+                return levels;
+            });
+        });
+    }
+
+    /**
+     * Stores the given stock as the rolled-up value of each product, in one batch. Concurrent roll-ups
+     * may land out of order; the next one corrects that, and checkout never relies on the value.
+     */
+    public void rollUp(Map<String, Long> availableByItemId) {
+        if (availableByItemId.isEmpty()) {
+            return;
+        }
+        WriteBatch batch = db.batch();
+        for (Map.Entry<String, Long> entry : availableByItemId.entrySet()) {
+            batch.set(counterRef(entry.getKey()), Collections.singletonMap(AVAILABLE, entry.getValue()), SetOptions.merge());
+        }
+        batch.commit().addOnFailureListener(executor, e -> Log.w(TAG, "Could not roll up the stock of " + availableByItemId.size() + " products.", e));
+    }
+
+    // The shard count rarely changes, so a tracked product that was read before only re-sums its shards.
+    private Task<StockLevel> fetch(String itemId, StockLevel previous) {
+        Task<Integer> shardCount = previous != null && previous.isTracked()
+                ? Tasks.forResult(previous.getShardCount())
+                : counterRef(itemId).get(Source.SERVER).continueWith(executor, task -> readShardCount(task.getResult()));
+        return shardCount.continueWithTask(executor, task -> {
+            int shards = task.getResult();
+            if (shards == 0) {
+                return Tasks.forResult(StockLevel.untracked(itemId, SystemClock.elapsedRealtime()));
+            }
+            AggregateField.Sum sum = AggregateField.sum(COUNT);
+            return counterRef(itemId).collection(SHARDS).aggregate(sum).get(AggregateSource.SERVER).continueWith(executor, sumTask -> {
+                Long total = sumTask.getResult().getLong(sum);
+                return new StockLevel(itemId, shards, total != null ? total.longValue() : 0, SystemClock.elapsedRealtime());
+            });
+        });
+    }
+
+    private static int readShardCount(DocumentSnapshot document) {
+        Long shardCount = document.getLong(SHARD_COUNT);
+        return document.exists() && shardCount != null ? shardCount.intValue() : 0;
+    }
+
+    /** Takes {@code quantity} off a random shard of a tracked product as part of {@code transaction}. */
+    public void decrement(Transaction transaction, StockLevel level, long quantity) {
+        int shard = ThreadLocalRandom.current().nextInt(level.getShardCount());
+        transaction.set(shardRef(level.getItemId(), shard), Collections.singletonMap(COUNT, FieldValue.increment(-quantity)), SetOptions.merge());
+    }
+
+    public void invalidate(Collection<String> itemIds) {
+        for (String itemId : itemIds) {
+            cache.remove(itemId);
+        }
+    }
+}
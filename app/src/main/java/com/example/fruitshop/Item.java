@@ -1,17 +1,24 @@
 package com.example.fruitshop;
 
+import com.google.firebase.firestore.Exclude;
+
+import java.util.Locale;
+
 public class Item {
     private String itemId;
     private int imageId;
     private String description;
-    private String price;
+    private Money price;
     private String details;
+    private Category category = Category.OTHER;
+    private boolean available = true;
     private String imageUrl;
+    private String formattedPrice;
 
     public Item() {
     }
 
-    public Item(String itemId, int imageId, String description, String price, String details) {
+    public Item(String itemId, int imageId, String description, Money price, String details) {
         this.itemId = itemId;
         this.imageId = imageId;
         this.description = description;
@@ -19,6 +26,12 @@ public class Item {
         this.details = details;
     }
 
+    public Item(String itemId, int imageId, String description, Money price, String details, Category category, boolean available) {
+        this(itemId, imageId, description, price, details);
+        this.category = category;
+        this.available = available;
+    }
+
     public String getItemId() {
         return itemId;
     }
@@ -31,14 +44,30 @@ public class Item {
         return description;
     }
 
-    public String getPrice() {
+    public Money getPrice() {
         return price;
     }
 
+    @Exclude
+    public String getFormattedPrice() {
+        if (formattedPrice == null && price != null) {
+            formattedPrice = price.format();
+        }
+        return formattedPrice;
+    }
+
     public String getDetails() {
         return details;
     }
 
+    public Category getCategory() {
+        return category;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
     public String getImageUrl() {
         return imageUrl;
     }
@@ -47,4 +76,20 @@ public class Item {
         this.imageUrl = imageUrl;
     }
 
-}
\ No newline at end of file
+    public enum Category {
+        FRUIT, VEGETABLE, OTHER;
+
+        public static Category fromKey(String key) {
+            if ("fruit".equals(key)) {
+                return FRUIT;
+            } else if ("vegetable".equals(key)) {
+                return VEGETABLE;
+            }
+            return OTHER;
+        }
+
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
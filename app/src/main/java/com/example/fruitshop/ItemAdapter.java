@@ -15,14 +15,12 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.SetOptions;
 
 import java.util.HashMap;
 import java.util.List;
@@ -31,61 +29,49 @@ import java.util.Map;
 public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder> {
 
     private static final String TAG = "ItemAdapter_Cart";
+    private static final int MIN_QUANTITY = 1;
+    private static final int MAX_QUANTITY = 99;
+    private static final int LOW_STOCK = 10;
+    static final Object PAYLOAD_AVAILABILITY = new Object();
+    private static final String[] QUANTITY_TEXT = new String[MAX_QUANTITY + 1];
+
+    static {
+        for (int i = 0; i <= MAX_QUANTITY; i++) {
+            QUANTITY_TEXT[i] = String.valueOf(i);
+        }
+    }
+
     private List<Item> items;
-    private FirebaseFirestore db;
     private FirebaseAuth mAuth;
+    private final CatalogImageLoader imageLoader;
+    private AvailabilityTracker availabilityTracker;
+    private final boolean nightMode;
+    // Quantities picked but not yet added, by item id, so they survive catalog reloads.
+    private final Map<String, Integer> pendingQuantities = new HashMap<>();
+    private int[] visiblePositions;
+    private Toast addedToast;
+    private final ListUpdateCallback updateCallback = new AdapterListUpdateCallback(this);
 
-    public ItemAdapter(List<Item> items) {
+    public ItemAdapter(List<Item> items, CatalogImageLoader imageLoader) {
         this.items = items;
-        this.db = FirebaseFirestore.getInstance();
+        this.imageLoader = imageLoader;
+        this.nightMode = AppCompatDelegate.getDefaultNightMode() == AppCompatDelegate.MODE_NIGHT_YES;
+        setHasStableIds(true);
         this.mAuth = FirebaseAuth.getInstance();
-        Log.d(TAG, "Adapter constructor: db and mAuth initialized.");
-        if (this.db == null) Log.e(TAG, "Firestore instance is NULL in constructor!");
-        if (this.mAuth == null) Log.e(TAG, "FirebaseAuth instance is NULL in constructor!");
     }
 
     @NonNull
     @Override
     public ItemViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.items, parent, false);
-        return new ItemViewHolder(view);
-    }
-
-
-    @Override
-    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position) {
-        Item currentItem = items.get(position);
-        if (currentItem == null) {
-            Log.e(TAG, "Item at position " + position + " is null!");
-            return;
-        }
-
-        holder.imageView.setImageResource(currentItem.getImageId());
-        holder.descriptionTextView.setText(currentItem.getDescription());
-        holder.priceTextView.setText(currentItem.getPrice());
-        holder.detailsTextView.setText(currentItem.getDetails());
+        ItemViewHolder holder = new ItemViewHolder(view);
 
-        if (AppCompatDelegate.getDefaultNightMode() == AppCompatDelegate.MODE_NIGHT_YES) {
+        if (nightMode) {
             holder.priceTextView.setTextColor(Color.WHITE);
-            if (holder.quantityEditText != null) {
-                holder.quantityEditText.setTextColor(Color.WHITE);
-            }
-        } else {
-            if (holder.quantityEditText != null) {
-                holder.quantityEditText.setTextColor(Color.BLACK);
-            }
         }
-
-        if (holder.quantityEditText != null) {
-            holder.quantityEditText.setText("1");
-        }
-        holder.quantity = 1;
-
         if (holder.quantityEditText != null) {
-            if (holder.textWatcher != null) {
-                holder.quantityEditText.removeTextChangedListener(holder.textWatcher);
-            }
-            holder.textWatcher = new TextWatcher() {
+            holder.quantityEditText.setTextColor(nightMode ? Color.WHITE : Color.BLACK);
+            holder.quantityEditText.addTextChangedListener(new TextWatcher() {
                 @Override
                 public void beforeTextChanged(CharSequence s, int start, int count, int after) {
                 }
@@ -96,26 +82,36 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder
 
                 @Override
                 public void afterTextChanged(Editable s) {
-                    if (s.length() > 0) {
-                        try {
-                            int parsedQuantity = Integer.parseInt(s.toString());
-                            if (parsedQuantity < 1) holder.quantity = 1;
-                            else if (parsedQuantity > 99) holder.quantity = 99;
-                            else holder.quantity = parsedQuantity;
-                        } catch (NumberFormatException e) {
-                            holder.quantity = 1;
-                        }
-                    } else {
-                        holder.quantity = 1;
+                    if (holder.binding || holder.boundItem == null) {
+                        return;
                     }
+                    int quantity = parseQuantity(s);
+                    holder.boundQuantity = quantity;
+                    setPendingQuantity(holder.boundItem, quantity);
                 }
-            };
-            holder.quantityEditText.addTextChangedListener(holder.textWatcher);
+            });
         }
 
         if (holder.addToCartButton != null) {
             holder.addToCartButton.setOnClickListener(v -> {
-                Log.d(TAG, "Add to Cart clicked for: " + currentItem.getDescription() + ", quantity: " + holder.quantity);
+                int position = holder.getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                Item currentItem = items.get(catalogPosition(position));
+                if (currentItem == null) {
+                    return;
+                }
+                int quantityToAdd = getPendingQuantity(currentItem);
+                Availability availability = peekAvailability(currentItem);
+                if (availability != null && !availability.isAvailable()) {
+                    showToast(v, currentItem.getDescription() + " is out of stock.");
+                    return;
+                }
+                if (availability != null) {
+                    currentItem = availability.applyTo(currentItem);
+                }
+                Log.d(TAG, "Add to Cart clicked for: " + currentItem.getDescription() + ", quantity: " + quantityToAdd);
 
                 FirebaseUser firebaseCurrentUser = mAuth.getCurrentUser();
                 if (firebaseCurrentUser == null) {
@@ -133,75 +129,198 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder
                     return;
                 }
 
-                final int finalQuantityToAdd;
-                if (holder.quantity <= 0) {
-                    finalQuantityToAdd = 1;
-                } else {
-                    finalQuantityToAdd = holder.quantity;
-                }
-
-                DocumentReference cartItemRef = db.collection("carts").document(userId).collection("items").document(itemId);
-
-                Log.d(TAG, "Attempting to access Firestore path: " + cartItemRef.getPath());
-
-                cartItemRef.get().addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        if (task.getResult() != null && task.getResult().exists()) {
-                            Log.d(TAG, "Item " + itemId + " exists in cart. Updating quantity by " + finalQuantityToAdd);
-                            cartItemRef.update("quantity", FieldValue.increment(finalQuantityToAdd)).addOnSuccessListener(aVoid -> {
-                                Log.d(TAG, "SUCCESS: Quantity updated for " + itemId);
-                                Toast.makeText(v.getContext(), currentItem.getDescription() + " quantity updated in cart.", Toast.LENGTH_SHORT).show();
-                            }).addOnFailureListener(e -> {
-                                Log.e(TAG, "FAILURE: Could not update quantity for " + itemId, e);
-                                Toast.makeText(v.getContext(), "Failed to update cart: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            });
-                        } else {
-                            Log.d(TAG, "Item " + itemId + " does not exist in cart. Adding new item.");
-                            Map<String, Object> cartItemData = new HashMap<>();
-                            cartItemData.put("itemName", currentItem.getDescription());
-                            cartItemData.put("itemId", currentItem.getItemId());
-
-                            String priceString = currentItem.getPrice().replaceAll("[^\\d.]", "");
-                            double priceValue = 0.0;
-                            if (!priceString.isEmpty()) {
-                                try {
-                                    priceValue = Double.parseDouble(priceString);
-                                } catch (NumberFormatException e) {
-                                    Log.e(TAG, "Error parsing price: " + currentItem.getPrice() + " for item " + itemId, e);
-                                }
-                            }
-                            cartItemData.put("itemPrice", priceValue);
-                            cartItemData.put("quantity", finalQuantityToAdd);
-                            cartItemData.put("timestamp", FieldValue.serverTimestamp());
-
-                            String imageUrl = currentItem.getImageUrl();
-                            if (imageUrl != null && !imageUrl.isEmpty()) {
-                                cartItemData.put("imageUrl", imageUrl);
-                                Log.d(TAG, "Adding imageUrl for " + itemId + ": " + imageUrl);
-                            } else {
-                                Log.w(TAG, "imageUrl is null or empty for item " + itemId + ". Not adding to cart data.");
-                            }
-
-                            cartItemRef.set(cartItemData, SetOptions.merge()).addOnSuccessListener(aVoid -> {
-                                Log.d(TAG, "SUCCESS: Item " + itemId + " added to cart.");
-                                Toast.makeText(v.getContext(), currentItem.getDescription() + " added to cart.", Toast.LENGTH_SHORT).show();
-                            }).addOnFailureListener(e -> {
-                                Log.e(TAG, "FAILURE: Could not add item " + itemId + " to cart.", e);
-                                Toast.makeText(v.getContext(), "Failed to add to cart: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            });
-                        }
-                    } else {
-                        Log.e(TAG, "FAILURE: Error checking cart for item " + itemId, task.getException());
-                        Toast.makeText(v.getContext(), "Error checking cart: " + task.getException().getMessage(), Toast.LENGTH_LONG).show();
-                    }
-                });
+                CartRepository.getInstance(v.getContext()).addToCart(userId, currentItem, quantityToAdd);
+                showToast(v, currentItem.getDescription() + " added to cart.");
             });
         }
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position) {
+        Item currentItem = items.get(catalogPosition(position));
+        if (currentItem == null) {
+            bindPlaceholder(holder);
+            return;
+        }
+
+        if (holder.boundItem != currentItem) {
+            imageLoader.load(holder.imageView, currentItem);
+            holder.descriptionTextView.setText(currentItem.getDescription());
+            holder.detailsTextView.setText(currentItem.getDetails());
+            holder.boundItem = currentItem;
+            holder.placeholderBound = false;
+            holder.availabilityBound = false;
+        }
+        bindAvailability(holder, currentItem);
+
+        int quantity = getPendingQuantity(currentItem);
+        if (holder.quantityEditText != null && holder.boundQuantity != quantity) {
+            holder.binding = true;
+            holder.quantityEditText.setText(QUANTITY_TEXT[quantity]);
+            holder.binding = false;
+            holder.boundQuantity = quantity;
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemViewHolder holder, int position, @NonNull List<Object> payloads) {
+        Item currentItem = items.get(catalogPosition(position));
+        if (!payloads.isEmpty() && currentItem != null && currentItem == holder.boundItem && onlyAvailability(payloads)) {
+            bindAvailability(holder, currentItem);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
+    private static boolean onlyAvailability(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_AVAILABILITY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Binds only what changed; the live availability, when known, overrides the catalog price.
+    private void bindAvailability(ItemViewHolder holder, Item item) {
+        Availability availability = peekAvailability(item);
+        if (holder.availabilityBound && holder.boundAvailability == availability) {
+            return;
+        }
+        holder.priceTextView.setText(availability != null && availability.hasPrice() ? availability.getPrice().format() : item.getFormattedPrice());
+        if (holder.stockTextView != null) {
+            if (availability == null) {
+                holder.stockTextView.setVisibility(View.GONE);
+            } else if (!availability.isAvailable()) {
+                holder.stockTextView.setText(R.string.out_of_stock);
+                holder.stockTextView.setVisibility(View.VISIBLE);
+            } else if (availability.isTracked() && availability.getStock() <= LOW_STOCK) {
+                holder.stockTextView.setText(holder.stockTextView.getContext().getString(R.string.only_left, availability.getStock()));
+                holder.stockTextView.setVisibility(View.VISIBLE);
+            } else {
+                holder.stockTextView.setVisibility(View.GONE);
+            }
+        }
+        if (holder.addToCartButton != null) {
+            holder.addToCartButton.setEnabled(availability == null || availability.isAvailable());
+        }
+        holder.boundAvailability = availability;
+        holder.availabilityBound = true;
+    }
+
+    private Availability peekAvailability(Item item) {
+        return availabilityTracker != null ? availabilityTracker.peek(item.getItemId()) : null;
+    }
+
+    public void setAvailabilityTracker(AvailabilityTracker availabilityTracker) {
+        this.availabilityTracker = availabilityTracker;
+    }
+
+    public void setItems(List<Item> items, int[] visiblePositions) {
+        this.items = items;
+        this.visiblePositions = visiblePositions;
+        notifyDataSetChanged();
+    }
+
+    /** Shows only the given catalog positions; {@code diff} must lead from {@link #getVisiblePositions()} to them. */
+    public void setVisiblePositions(int[] visiblePositions, VisiblePositionsDiff diff) {
+        this.visiblePositions = visiblePositions;
+        if (diff.isFullRefresh()) {
+            notifyDataSetChanged();
+        } else {
+            diff.dispatchUpdatesTo(updateCallback);
+        }
+    }
+
+    public int[] getVisiblePositions() {
+        return visiblePositions;
+    }
+
+    /** The item at the position if it is already loaded, without moving the catalog's page window. */
+    public Item peekItemAt(int adapterPosition) {
+        int catalogPosition = catalogPosition(adapterPosition);
+        return items instanceof PagedCatalog ? ((PagedCatalog) items).peek(catalogPosition) : items.get(catalogPosition);
+    }
+
+    private int catalogPosition(int adapterPosition) {
+        return visiblePositions == null ? adapterPosition : visiblePositions[adapterPosition];
+    }
+
+    private void bindPlaceholder(ItemViewHolder holder) {
+        if (holder.boundItem == null && holder.placeholderBound) {
+            return;
+        }
+        imageLoader.loadPlaceholder(holder.imageView);
+        holder.descriptionTextView.setText(null);
+        holder.priceTextView.setText(null);
+        holder.detailsTextView.setText(null);
+        if (holder.stockTextView != null) {
+            holder.stockTextView.setVisibility(View.GONE);
+        }
+        holder.boundItem = null;
+        holder.boundAvailability = null;
+        holder.availabilityBound = false;
+        holder.placeholderBound = true;
+    }
+
+    private int getPendingQuantity(Item item) {
+        Integer quantity = pendingQuantities.get(item.getItemId());
+        return quantity == null ? MIN_QUANTITY : quantity;
+    }
+
+    private void setPendingQuantity(Item item, int quantity) {
+        if (quantity == MIN_QUANTITY) {
+            pendingQuantities.remove(item.getItemId());
+        } else {
+            pendingQuantities.put(item.getItemId(), quantity);
+        }
+    }
+
+    private static int parseQuantity(Editable s) {
+        int length = s.length();
+        if (length == 0) {
+            return MIN_QUANTITY;
+        }
+        int quantity = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return MIN_QUANTITY;
+            }
+            quantity = quantity * 10 + (c - '0');
+            if (quantity > MAX_QUANTITY) {
+                return MAX_QUANTITY;
+            }
+        }
+        return Math.max(quantity, MIN_QUANTITY);
+    }
+
+    private void showToast(View v, String message) {
+        if (addedToast != null) {
+            addedToast.cancel();
+        }
+        addedToast = Toast.makeText(v.getContext(), message, Toast.LENGTH_SHORT);
+        addedToast.show();
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ItemViewHolder holder) {
+        super.onViewRecycled(holder);
+        imageLoader.clear(holder.imageView);
+        holder.boundItem = null;
+        holder.availabilityBound = false;
+        holder.placeholderBound = false;
     }
 
     @Override
     public int getItemCount() {
-        return items.size();
+        return visiblePositions == null ? items.size() : visiblePositions.length;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return catalogPosition(position);
     }
 
     public static class ItemViewHolder extends RecyclerView.ViewHolder {
@@ -211,8 +330,13 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder
         public TextView detailsTextView;
         public Button addToCartButton;
         public EditText quantityEditText;
-        public int quantity;
-        public TextWatcher textWatcher;
+        public TextView stockTextView;
+        Item boundItem;
+        Availability boundAvailability;
+        boolean availabilityBound;
+        boolean placeholderBound;
+        int boundQuantity;
+        boolean binding;
 
         public ItemViewHolder(View itemView) {
             super(itemView);
@@ -222,7 +346,7 @@ public class ItemAdapter extends RecyclerView.Adapter<ItemAdapter.ItemViewHolder
             detailsTextView = itemView.findViewById(R.id.itemDetailsTextView);
             addToCartButton = itemView.findViewById(R.id.addToCartButton);
             quantityEditText = itemView.findViewById(R.id.quantityEditText);
-            quantity = 1;
+            stockTextView = itemView.findViewById(R.id.itemStockTextView);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,46 @@
+package com.example.fruitshop;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes catalog/{itemId} documents field by field. The image resource id is local
+ * only, so decoded items carry 0 and are resolved from their item id when shown.
+ */
+public final class ItemCodec {
+
+    static final String DESCRIPTION = "description";
+    static final String DETAILS = "details";
+    static final String PRICE_CENTS = "priceCents";
+    static final String CATEGORY = "category";
+    static final String AVAILABLE = "available";
+    static final String IMAGE_URL = "imageUrl";
+
+    private static final int DOCUMENT_CAPACITY = 8;
+
+    private ItemCodec() {
+    }
+
+    public static Item decode(DocumentSnapshot document) {
+        Long priceCents = document.getLong(PRICE_CENTS);
+        Boolean available = document.getBoolean(AVAILABLE);
+        Item item = new Item(document.getId(), 0, document.getString(DESCRIPTION), Money.ofCents(priceCents != null ? priceCents : 0), document.getString(DETAILS), Item.Category.fromKey(document.getString(CATEGORY)), available == null || available);
+        item.setImageUrl(document.getString(IMAGE_URL));
+        return item;
+    }
+
+    public static Map<String, Object> encode(Item item) {
+        Map<String, Object> data = new HashMap<>(DOCUMENT_CAPACITY);
+        data.put(DESCRIPTION, item.getDescription());
+        data.put(DETAILS, item.getDetails());
+        data.put(PRICE_CENTS, item.getPrice().getCents());
+        data.put(CATEGORY, item.getCategory().getKey());
+        data.put(AVAILABLE, item.isAvailable());
+        if (item.getImageUrl() != null && !item.getImageUrl().isEmpty()) {
+            data.put(IMAGE_URL, item.getImageUrl());
+        }
+        return data;
+    }
+}
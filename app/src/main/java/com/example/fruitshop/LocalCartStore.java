@@ -0,0 +1,86 @@
+package com.example.fruitshop;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public class LocalCartStore {
+
+    private static final String[] COLUMNS = {"item_id", "item_name", "item_price_cents", "quantity", "image_url", "added_at"};
+
+    private final CartDatabaseHelper dbHelper;
+
+    public LocalCartStore(CartDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    public List<CartItem> loadItems(String userId) {
+        List<CartItem> items = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(CartDatabaseHelper.TABLE_ITEMS, COLUMNS, "user_id = ?", new String[]{userId}, null, null, "added_at ASC, item_id ASC")) {
+            while (cursor.moveToNext()) {
+                items.add(readItem(cursor));
+            }
+        }
+        return items;
+    }
+
+    public CartItem findItem(String userId, String itemId) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(CartDatabaseHelper.TABLE_ITEMS, COLUMNS, "user_id = ? AND item_id = ?", new String[]{userId, itemId}, null, null, null)) {
+            return cursor.moveToFirst() ? readItem(cursor) : null;
+        }
+    }
+
+    public void putItem(String userId, CartItem item) {
+        ContentValues values = new ContentValues();
+        values.put("user_id", userId);
+        values.put("item_id", item.getItemId());
+        values.put("item_name", item.getItemName());
+        values.put("item_price_cents", item.getPrice().getCents());
+        values.put("quantity", item.getQuantity());
+        values.put("image_url", item.getImageUrl());
+        values.put("added_at", item.getTimestamp() != null ? item.getTimestamp().getTime() : System.currentTimeMillis());
+        dbHelper.getWritableDatabase().insertWithOnConflict(CartDatabaseHelper.TABLE_ITEMS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    public void deleteItem(String userId, String itemId) {
+        dbHelper.getWritableDatabase().delete(CartDatabaseHelper.TABLE_ITEMS, "user_id = ? AND item_id = ?", new String[]{userId, itemId});
+    }
+
+    public void putItems(String userId, List<CartItem> items) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (CartItem item : items) {
+                putItem(userId, item);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void deleteItems(String userId, Collection<String> itemIds) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String itemId : itemIds) {
+                deleteItem(userId, itemId);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static CartItem readItem(Cursor cursor) {
+        CartItem item = new CartItem(cursor.getString(0), cursor.getString(1), Money.ofCents(cursor.getLong(2)), cursor.getLong(3));
+        item.setImageUrl(cursor.getString(4));
+        item.setTimestamp(new Date(cursor.getLong(5)));
+        return item;
+    }
+}
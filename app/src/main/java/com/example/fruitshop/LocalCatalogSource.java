@@ -0,0 +1,71 @@
+package com.example.fruitshop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Positional reads over the local store. Each page resumes after the key of the row before it, so
+ * reading the catalog in order seeks the index once per page rather than skipping every row ahead
+ * of it. A jump to a position not read yet walks the order index from the nearest one that was.
+ */
+public class LocalCatalogSource implements CatalogSource {
+
+    private final LocalCatalogStore store;
+    private final int size;
+    // The key of the row just before each position a page has started or ended at.
+    private final TreeMap<Integer, LocalCatalogStore.PageKey> keysBefore = new TreeMap<>();
+
+    public LocalCatalogSource(LocalCatalogStore store) {
+        this.store = store;
+        this.size = store.count();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Item> loadPage(int start, int count) {
+        count = Math.max(0, Math.min(count, size - start));
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        LocalCatalogStore.PageKey after = null;
+        if (start > 0) {
+            after = keyBefore(start);
+            if (after == null) {
+                return new ArrayList<>();
+            }
+        }
+        LocalCatalogStore.Page page = store.loadPageAfter(after, count);
+        if (page.lastKey != null) {
+            remember(start + page.items.size(), page.lastKey);
+        }
+        return page.items;
+    }
+
+    private LocalCatalogStore.PageKey keyBefore(int start) {
+        Map.Entry<Integer, LocalCatalogStore.PageKey> nearest;
+        synchronized (keysBefore) {
+            nearest = keysBefore.floorEntry(start);
+        }
+        if (nearest != null && nearest.getKey() == start) {
+            return nearest.getValue();
+        }
+        int from = nearest != null ? nearest.getKey() : 0;
+        LocalCatalogStore.PageKey key = store.keyAfter(nearest != null ? nearest.getValue() : null, start - from);
+        if (key != null) {
+            remember(start, key);
+        }
+        return key;
+    }
+
+    private void remember(int position, LocalCatalogStore.PageKey key) {
+        synchronized (keysBefore) {
+            keysBefore.put(position, key);
+        }
+    }
+}
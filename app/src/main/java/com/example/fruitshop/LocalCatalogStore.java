@@ -0,0 +1,243 @@
+package com.example.fruitshop;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The on-device catalog snapshot. It is seeded from the bundled catalog, re-merged when an update
+ * ships a different one, and moved forward by remote changes, tracking the newest {@code updatedAt}
+ * applied as its watermark.
+ */
+public class LocalCatalogStore {
+
+    private static final String[] COLUMNS = {"item_id", "description", "details", "price_cents", "category", "available", "image_url", "sort_key"};
+    private static final String[] KEY_COLUMNS = {"sort_key", "item_id"};
+    private static final String ORDER = "sort_key ASC, item_id ASC";
+    private static final String AFTER_KEY = "sort_key > ? OR (sort_key = ? AND item_id > ?)";
+    private static final String META_WATERMARK = "watermark";
+    private static final String META_SNAPSHOT_VERSION = "snapshot_version";
+    private static final String META_BUNDLE_HASH = "bundle_hash";
+
+    private final CatalogDatabaseHelper dbHelper;
+    private final DrawableResolver drawableResolver;
+
+    public LocalCatalogStore(CatalogDatabaseHelper dbHelper, DrawableResolver drawableResolver) {
+        this.dbHelper = dbHelper;
+        this.drawableResolver = drawableResolver;
+    }
+
+    /**
+     * Merges the bundled catalog whenever {@link CatalogIndex} differs from the one merged last, so an
+     * app update reaches existing installs. Rows and deletions that came from the server are newer
+     * than anything bundled and are kept; the watermark is left alone.
+     */
+    public void seedFromBundle() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        if (getMeta(db, META_BUNDLE_HASH, -1) == CatalogIndex.CONTENT_HASH) {
+            return;
+        }
+        db.beginTransaction();
+        try {
+            boolean existing = DatabaseUtils.queryNumEntries(db, CatalogDatabaseHelper.TABLE_ITEMS) > 0;
+            Set<String> bundledIds = new HashSet<>(CatalogIndex.SIZE * 2);
+            for (int i = 0; i < CatalogIndex.SIZE; i++) {
+                String itemId = CatalogIndex.ITEM_IDS[i];
+                bundledIds.add(itemId);
+                if (storedUpdatedAt(db, itemId) > 0) {
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put("item_id", itemId);
+                values.put("sort_key", i);
+                values.put("description", CatalogIndex.DESCRIPTIONS[i]);
+                values.put("details", CatalogIndex.DETAILS[i]);
+                values.put("price_cents", CatalogIndex.PRICE_CENTS[i]);
+                values.put("category", CatalogIndex.CATEGORIES[i]);
+                values.put("available", CatalogIndex.AVAILABLE[i] ? 1 : 0);
+                values.put("updated_at", 0);
+                db.insertWithOnConflict(CatalogDatabaseHelper.TABLE_ITEMS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            List<String> dropped = new ArrayList<>();
+            try (Cursor cursor = db.query(CatalogDatabaseHelper.TABLE_ITEMS, new String[]{"item_id"}, "updated_at = 0", null, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    if (!bundledIds.contains(cursor.getString(0))) {
+                        dropped.add(cursor.getString(0));
+                    }
+                }
+            }
+            for (String itemId : dropped) {
+                db.delete(CatalogDatabaseHelper.TABLE_ITEMS, "item_id = ?", new String[]{itemId});
+            }
+            putMeta(db, META_BUNDLE_HASH, CatalogIndex.CONTENT_HASH);
+            if (existing) {
+                putMeta(db, META_SNAPSHOT_VERSION, getMeta(db, META_SNAPSHOT_VERSION, 0) + 1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public int count() {
+        return (int) DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), CatalogDatabaseHelper.TABLE_ITEMS);
+    }
+
+    /**
+     * Reads up to {@code count} rows in catalog order after {@code after}, or from the first row when
+     * it is null. The read seeks the order index to the key instead of skipping the rows before it.
+     */
+    public Page loadPageAfter(PageKey after, int count) {
+        List<Item> items = new ArrayList<>(count);
+        PageKey lastKey = null;
+        try (Cursor cursor = queryAfter(COLUMNS, after, 0, count)) {
+            while (cursor.moveToNext()) {
+                items.add(readItem(cursor));
+            }
+            if (cursor.moveToLast()) {
+                lastKey = new PageKey(cursor.getLong(7), cursor.getString(0));
+            }
+        }
+        return new Page(items, lastKey);
+    }
+
+    /** The key of the row {@code rows} rows after {@code after}, reading only the order index; null past the end. */
+    public PageKey keyAfter(PageKey after, int rows) {
+        try (Cursor cursor = queryAfter(KEY_COLUMNS, after, rows - 1, 1)) {
+            return cursor.moveToFirst() ? new PageKey(cursor.getLong(0), cursor.getString(1)) : null;
+        }
+    }
+
+    private Cursor queryAfter(String[] columns, PageKey after, int skip, int count) {
+        String selection = after != null ? AFTER_KEY : null;
+        String[] selectionArgs = after != null ? new String[]{String.valueOf(after.sortKey), String.valueOf(after.sortKey), after.itemId} : null;
+        String limit = skip > 0 ? skip + "," + count : String.valueOf(count);
+        return dbHelper.getReadableDatabase().query(CatalogDatabaseHelper.TABLE_ITEMS, columns, selection, selectionArgs, null, null, ORDER, limit);
+    }
+
+    public long getWatermark() {
+        return getMeta(dbHelper.getReadableDatabase(), META_WATERMARK, 0);
+    }
+
+    public long getSnapshotVersion() {
+        return getMeta(dbHelper.getReadableDatabase(), META_SNAPSHOT_VERSION, 0);
+    }
+
+    /**
+     * Applies remote changes in one transaction. Changes that are not newer than the stored row are
+     * skipped, so a page fetched twice is harmless. Returns the number of rows that changed.
+     */
+    public int applyChanges(List<CatalogChange> changes) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long watermark = getMeta(db, META_WATERMARK, 0);
+            int applied = 0;
+            for (CatalogChange change : changes) {
+                watermark = Math.max(watermark, change.getUpdatedAt());
+                String[] itemIdArg = {change.getItemId()};
+                if (storedUpdatedAt(db, change.getItemId()) >= change.getUpdatedAt()) {
+                    continue;
+                }
+                if (change.isDeleted()) {
+                    // The tombstone keeps a later bundle merge from bringing the row back.
+                    ContentValues tombstone = new ContentValues();
+                    tombstone.put("item_id", change.getItemId());
+                    tombstone.put("updated_at", change.getUpdatedAt());
+                    db.insertWithOnConflict(CatalogDatabaseHelper.TABLE_TOMBSTONES, null, tombstone, SQLiteDatabase.CONFLICT_REPLACE);
+                    if (db.delete(CatalogDatabaseHelper.TABLE_ITEMS, "item_id = ?", itemIdArg) == 0) {
+                        continue;
+                    }
+                } else {
+                    db.insertWithOnConflict(CatalogDatabaseHelper.TABLE_ITEMS, null, toValues(change), SQLiteDatabase.CONFLICT_REPLACE);
+                    db.delete(CatalogDatabaseHelper.TABLE_TOMBSTONES, "item_id = ?", itemIdArg);
+                }
+                applied++;
+            }
+            putMeta(db, META_WATERMARK, watermark);
+            if (applied > 0) {
+                putMeta(db, META_SNAPSHOT_VERSION, getMeta(db, META_SNAPSHOT_VERSION, 0) + 1);
+            }
+            db.setTransactionSuccessful();
+            return applied;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues toValues(CatalogChange change) {
+        Item item = change.getItem();
+        ContentValues values = new ContentValues();
+        values.put("item_id", item.getItemId());
+        values.put("sort_key", change.getSortKey());
+        values.put("description", item.getDescription());
+        values.put("details", item.getDetails());
+        values.put("price_cents", item.getPrice().getCents());
+        values.put("category", item.getCategory().getKey());
+        values.put("available", item.isAvailable() ? 1 : 0);
+        values.put("image_url", item.getImageUrl());
+        values.put("updated_at", change.getUpdatedAt());
+        return values;
+    }
+
+    private Item readItem(Cursor cursor) {
+        String itemId = cursor.getString(0);
+        Item item = new Item(itemId, drawableResolver.resolve(itemId), cursor.getString(1), Money.ofCents(cursor.getLong(3)), cursor.getString(2), Item.Category.fromKey(cursor.getString(4)), cursor.getInt(5) != 0);
+        item.setImageUrl(cursor.getString(6));
+        return item;
+    }
+
+    /** The {@code updatedAt} of the stored row or its tombstone, or -1 when the id was never seen. */
+    private static long storedUpdatedAt(SQLiteDatabase db, String itemId) {
+        String[] selectionArgs = {itemId};
+        try (Cursor cursor = db.query(CatalogDatabaseHelper.TABLE_ITEMS, new String[]{"updated_at"}, "item_id = ?", selectionArgs, null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        }
+        try (Cursor cursor = db.query(CatalogDatabaseHelper.TABLE_TOMBSTONES, new String[]{"updated_at"}, "item_id = ?", selectionArgs, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private static long getMeta(SQLiteDatabase db, String key, long defaultValue) {
+        try (Cursor cursor = db.query(CatalogDatabaseHelper.TABLE_META, new String[]{"meta_value"}, "meta_key = ?", new String[]{key}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : defaultValue;
+        }
+    }
+
+    private static void putMeta(SQLiteDatabase db, String key, long value) {
+        ContentValues values = new ContentValues();
+        values.put("meta_key", key);
+        values.put("meta_value", value);
+        db.insertWithOnConflict(CatalogDatabaseHelper.TABLE_META, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /** A row's place in catalog order, where a keyset read resumes. */
+    public static final class PageKey {
+        final long sortKey;
+        final String itemId;
+
+        PageKey(long sortKey, String itemId) {
+            this.sortKey = sortKey;
+            this.itemId = itemId;
+        }
+    }
+
+    public static final class Page {
+        public final List<Item> items;
+        /** The key of the last row, or null when the page is empty. */
+        public final PageKey lastKey;
+
+        Page(List<Item> items, PageKey lastKey) {
+            this.items = items;
+            this.lastKey = lastKey;
+        }
+    }
+}
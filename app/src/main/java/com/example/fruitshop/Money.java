@@ -0,0 +1,124 @@
+package com.example.fruitshop;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * Immutable amount of US dollars stored as whole cents.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final Currency CURRENCY = Currency.getInstance("USD");
+    private static Locale formatLocale;
+    private static NumberFormat formatter;
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    public static Money fromDouble(double amount) {
+        return ofCents(Math.round(amount * 100));
+    }
+
+    public static Money parse(String text) {
+        return parse(text, Locale.getDefault());
+    }
+
+    /**
+     * Parses an amount written in the locale's currency format, as {@link #format(Locale)} writes
+     * it, or as a plain number in the locale. Text either format leaves partly unread is rejected.
+     */
+    public static Money parse(String text, Locale locale) {
+        String trimmed = text.trim();
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(locale);
+        currencyFormat.setCurrency(CURRENCY);
+        BigDecimal amount = parseFully(currencyFormat, trimmed);
+        if (amount == null) {
+            amount = parseFully(NumberFormat.getNumberInstance(locale), trimmed);
+        }
+        if (amount == null) {
+            throw new NumberFormatException("Not an amount: '" + text + "'");
+        }
+        try {
+            return ofCents(amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: '" + text + "'");
+        }
+    }
+
+    private static BigDecimal parseFully(NumberFormat format, String text) {
+        if (format instanceof DecimalFormat) {
+            ((DecimalFormat) format).setParseBigDecimal(true);
+        }
+        ParsePosition position = new ParsePosition(0);
+        Number number = format.parse(text, position);
+        if (number == null || position.getIndex() != text.length()) {
+            return null;
+        }
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(cents + other.cents);
+    }
+
+    public Money times(long quantity) {
+        return quantity == 1 ? this : ofCents(cents * quantity);
+    }
+
+    public String format() {
+        return format(Locale.getDefault());
+    }
+
+    public String format(Locale locale) {
+        synchronized (Money.class) {
+            if (!locale.equals(formatLocale)) {
+                formatter = NumberFormat.getCurrencyInstance(locale);
+                formatter.setCurrency(CURRENCY);
+                formatLocale = locale;
+            }
+            return formatter.format(BigDecimal.valueOf(cents, 2));
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return "$" + BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
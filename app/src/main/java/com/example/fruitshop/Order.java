@@ -0,0 +1,123 @@
+package com.example.fruitshop;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A placed order, stored at orders/{orderId}. The order id is the client's idempotency key, so a
+ * retried checkout finds the order it already wrote instead of placing a second one.
+ */
+public final class Order {
+
+    static final String USER_ID = "userId";
+    static final String STATUS = "status";
+    static final String LINES = "lines";
+    static final String LINE_COUNT = "lineCount";
+    static final String UNIT_COUNT = "unitCount";
+    static final String SUBTOTAL_CENTS = "subtotalCents";
+    static final String CREATED_AT = "createdAt";
+
+    static final String STATUS_PLACED = "placed";
+
+    private static final int DOCUMENT_CAPACITY = 10;
+    private static final int LINE_CAPACITY = 6;
+
+    private final String orderId;
+    private final String userId;
+    private final List<CartItem> lines;
+    private final long subtotalCents;
+    private final long unitCount;
+    private final Date createdAt;
+
+    public Order(String orderId, String userId, List<CartItem> lines, Date createdAt) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        long subtotal = 0;
+        long units = 0;
+        for (CartItem line : lines) {
+            subtotal += line.getPrice().getCents() * line.getQuantity();
+            units += line.getQuantity();
+        }
+        this.subtotalCents = subtotal;
+        this.unitCount = units;
+        this.createdAt = createdAt;
+    }
+
+    public static Order decode(DocumentSnapshot document) {
+        List<CartItem> lines = new ArrayList<>();
+        Object rawLines = document.get(LINES);
+        if (rawLines instanceof List) {
+            for (Object rawLine : (List<?>) rawLines) {
+                if (rawLine instanceof Map) {
+                    lines.add(decodeLine((Map<?, ?>) rawLine));
+                }
+            }
+        }
+        return new Order(document.getId(), document.getString(USER_ID), lines, document.getDate(CREATED_AT));
+    }
+
+    public static Map<String, Object> encode(Order order) {
+        List<Map<String, Object>> lines = new ArrayList<>(order.lines.size());
+        for (CartItem line : order.lines) {
+            Map<String, Object> data = new HashMap<>(LINE_CAPACITY);
+            data.put(CartItemCodec.ITEM_ID, line.getItemId());
+            data.put(CartItemCodec.ITEM_NAME, line.getItemName());
+            data.put(CartItemCodec.ITEM_PRICE_CENTS, line.getPrice().getCents());
+            data.put(CartItemCodec.QUANTITY, line.getQuantity());
+            if (line.getImageUrl() != null && !line.getImageUrl().isEmpty()) {
+                data.put(CartItemCodec.IMAGE_URL, line.getImageUrl());
+            }
+            lines.add(data);
+        }
+        Map<String, Object> data = new HashMap<>(DOCUMENT_CAPACITY);
+        data.put(USER_ID, order.userId);
+        data.put(STATUS, STATUS_PLACED);
+        data.put(LINES, lines);
+        data.put(LINE_COUNT, order.lines.size());
+        data.put(UNIT_COUNT, order.unitCount);
+        data.put(SUBTOTAL_CENTS, order.subtotalCents);
+        data.put(CREATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    private static CartItem decodeLine(Map<?, ?> data) {
+        Object priceCents = data.get(CartItemCodec.ITEM_PRICE_CENTS);
+        Object quantity = data.get(CartItemCodec.QUANTITY);
+        CartItem line = new CartItem((String) data.get(CartItemCodec.ITEM_ID), (String) data.get(CartItemCodec.ITEM_NAME), Money.ofCents(priceCents instanceof Number ? ((Number) priceCents).longValue() : 0), quantity instanceof Number ? ((Number) quantity).longValue() : 0);
+        line.setImageUrl((String) data.get(CartItemCodec.IMAGE_URL));
+        return line;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /** The ordered lines, which can be passed to {@link CartRepository#addItems} to order them again. */
+    public List<CartItem> getLines() {
+        return lines;
+    }
+
+    public long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public long getUnitCount() {
+        return unitCount;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+}
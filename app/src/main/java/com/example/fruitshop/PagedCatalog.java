@@ -0,0 +1,133 @@
+package com.example.fruitshop;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * A catalog list that holds only a window of pages around the last position read. Rows whose page
+ * is not loaded yet read as null; the listener is told when their page arrives. Pages farthest from
+ * the viewport are evicted once the window is full.
+ */
+public class PagedCatalog extends AbstractList<Item> implements RandomAccess {
+
+    public static final int PAGE_SIZE = 50;
+    public static final int MAX_PAGES = 6;
+
+    private final CatalogSource source;
+    private final Executor loadExecutor;
+    private final Executor callbackExecutor;
+    private final Listener listener;
+    private final int size;
+    private final int pageSize;
+    private final int maxPages;
+
+    private final Map<Integer, Item[]> pages = new HashMap<>();
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private int currentPage;
+
+    public PagedCatalog(CatalogSource source, Executor loadExecutor, Executor callbackExecutor, Listener listener) {
+        this(source, loadExecutor, callbackExecutor, listener, PAGE_SIZE, MAX_PAGES);
+    }
+
+    PagedCatalog(CatalogSource source, Executor loadExecutor, Executor callbackExecutor, Listener listener, int pageSize, int maxPages) {
+        this.source = source;
+        this.loadExecutor = loadExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+        this.size = source.size();
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    @Override
+    public Item get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int page = index / pageSize;
+        currentPage = page;
+        int offset = index - page * pageSize;
+        if (offset >= pageSize / 2) {
+            requestPage(page + 1);
+        } else {
+            requestPage(page - 1);
+        }
+        Item[] items = pages.get(page);
+        if (items == null) {
+            requestPage(page);
+            return null;
+        }
+        return offset < items.length ? items[offset] : null;
+    }
+
+    /** The row if its page is loaded, otherwise null; unlike {@link #get} it never moves the window. */
+    public Item peek(int index) {
+        Item[] items = pages.get(index / pageSize);
+        int offset = index % pageSize;
+        return items != null && offset < items.length ? items[offset] : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private void requestPage(int page) {
+        int start = page * pageSize;
+        if (page < 0 || start >= size || pages.containsKey(page) || !loadingPages.add(page)) {
+            return;
+        }
+        int count = Math.min(pageSize, size - start);
+        loadExecutor.execute(() -> {
+            List<Item> loaded;
+            try {
+                loaded = source.loadPage(start, count);
+            } catch (RuntimeException e) {
+                callbackExecutor.execute(() -> {
+                    loadingPages.remove(page);
+                    listener.onPageFailed(start, count, e);
+                });
+                return;
+            }
+            callbackExecutor.execute(() -> onPageLoaded(page, start, loaded));
+        });
+    }
+
+    private void onPageLoaded(int page, int start, List<Item> loaded) {
+        loadingPages.remove(page);
+        if (Math.abs(page - currentPage) > maxPages / 2) {
+            return;
+        }
+        pages.put(page, loaded.toArray(new Item[0]));
+        while (pages.size() > maxPages) {
+            evictFarthestPage();
+        }
+        listener.onPageLoaded(start, loaded.size());
+    }
+
+    private void evictFarthestPage() {
+        int farthest = currentPage;
+        for (int page : pages.keySet()) {
+            if (Math.abs(page - currentPage) > Math.abs(farthest - currentPage)) {
+                farthest = page;
+            }
+        }
+        pages.remove(farthest);
+    }
+
+    public interface Listener {
+        void onPageLoaded(int start, int count);
+
+        void onPageFailed(int start, int count, Exception e);
+    }
+}
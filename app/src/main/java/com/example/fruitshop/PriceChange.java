@@ -0,0 +1,29 @@
+package com.example.fruitshop;
+
+/** A cart line whose catalog price moved since it was added. */
+public final class PriceChange {
+
+    private final CartItem line;
+    private final Money newPrice;
+
+    public PriceChange(CartItem line, Money newPrice) {
+        this.line = line;
+        this.newPrice = newPrice;
+    }
+
+    public String getItemId() {
+        return line.getItemId();
+    }
+
+    public String getItemName() {
+        return line.getItemName();
+    }
+
+    public Money getOldPrice() {
+        return line.getPrice();
+    }
+
+    public Money getNewPrice() {
+        return newPrice;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.fruitshop;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SqliteCartOutbox implements CartOutbox {
+
+    private final CartDatabaseHelper dbHelper;
+    // Highest seq ever handed to the backend. Those operations may have been applied even if their
+    // batch failed, so they are never superseded. Unknown after a restart until the first access,
+    // when every queued operation is assumed sent.
+    private long sentThroughSeq = Long.MIN_VALUE;
+
+    public SqliteCartOutbox(CartDatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    @Override
+    public void enqueue(CartOperation operation) {
+        enqueueAll(Collections.singletonList(operation));
+    }
+
+    @Override
+    public void enqueueAll(List<CartOperation> operations) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (CartOperation operation : operations) {
+                insert(db, operation);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void insert(SQLiteDatabase db, CartOperation operation) {
+        // Operations hold absolute state, so a newer one supersedes any unsent one for the same line.
+        // The superseded operation's base is kept, since the backend never saw its result.
+        String unsentAfter = String.valueOf(sentThroughSeq(db));
+        try (Cursor cursor = db.query(CartDatabaseHelper.TABLE_OUTBOX, new String[]{"base_quantity", "base_price_cents"}, "user_id = ? AND item_id = ? AND seq > ?", new String[]{operation.getUserId(), operation.getItemId(), unsentAfter}, null, null, "seq ASC", "1")) {
+            if (cursor.moveToFirst()) {
+                operation = operation.withBase(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
+        db.delete(CartDatabaseHelper.TABLE_OUTBOX, "user_id = ? AND item_id = ? AND seq > ?", new String[]{operation.getUserId(), operation.getItemId(), unsentAfter});
+
+        ContentValues values = new ContentValues();
+        values.put("op_id", operation.getOpId());
+        values.put("op_type", operation.getType().name());
+        values.put("user_id", operation.getUserId());
+        values.put("item_id", operation.getItemId());
+        values.put("item_name", operation.getItemName());
+        values.put("item_price_cents", operation.getItemPriceCents());
+        values.put("quantity", operation.getQuantity());
+        values.put("image_url", operation.getImageUrl());
+        values.put("added_at", operation.getAddedAt());
+        values.put("base_quantity", operation.getBaseQuantity());
+        values.put("base_price_cents", operation.getBasePriceCents());
+        db.insertOrThrow(CartDatabaseHelper.TABLE_OUTBOX, null, values);
+    }
+
+    @Override
+    public List<CartOperation> peek(int maxCount) {
+        List<CartOperation> operations = new ArrayList<>();
+        sentThroughSeq(dbHelper.getReadableDatabase());
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(CartDatabaseHelper.TABLE_OUTBOX, null, null, null, null, null, "seq ASC", String.valueOf(maxCount))) {
+            int seqColumn = cursor.getColumnIndexOrThrow("seq");
+            while (cursor.moveToNext()) {
+                operations.add(read(cursor));
+                sentThroughSeq = Math.max(sentThroughSeq, cursor.getLong(seqColumn));
+            }
+        }
+        return operations;
+    }
+
+    private static CartOperation read(Cursor cursor) {
+        return new CartOperation(
+                cursor.getString(cursor.getColumnIndexOrThrow("op_id")),
+                CartOperation.Type.valueOf(cursor.getString(cursor.getColumnIndexOrThrow("op_type"))),
+                cursor.getString(cursor.getColumnIndexOrThrow("user_id")),
+                cursor.getString(cursor.getColumnIndexOrThrow("item_id")),
+                cursor.getString(cursor.getColumnIndexOrThrow("item_name")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("item_price_cents")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("quantity")),
+                cursor.getString(cursor.getColumnIndexOrThrow("image_url")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("added_at")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("base_quantity")),
+                cursor.getLong(cursor.getColumnIndexOrThrow("base_price_cents")));
+    }
+
+    @Override
+    public void remove(List<CartOperation> operations) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (CartOperation operation : operations) {
+                db.delete(CartDatabaseHelper.TABLE_OUTBOX, "op_id = ?", new String[]{operation.getOpId()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void release() {
+        // Sent operations stay unsupersedable: a failed batch may still have been committed.
+    }
+
+    private long sentThroughSeq(SQLiteDatabase db) {
+        if (sentThroughSeq == Long.MIN_VALUE) {
+            try (Cursor cursor = db.rawQuery("SELECT MAX(seq) FROM " + CartDatabaseHelper.TABLE_OUTBOX, null)) {
+                sentThroughSeq = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+            }
+        }
+        return sentThroughSeq;
+    }
+
+    @Override
+    public boolean hasPending(String userId, String itemId) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(CartDatabaseHelper.TABLE_OUTBOX, new String[]{"seq"}, "user_id = ? AND item_id = ?", new String[]{userId, itemId}, null, null, null, "1")) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    @Override
+    public CartOperation findPending(String userId, String itemId) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().query(CartDatabaseHelper.TABLE_OUTBOX, null, "user_id = ? AND item_id = ?", new String[]{userId, itemId}, null, null, "seq DESC", "1")) {
+            return cursor.moveToFirst() ? read(cursor) : null;
+        }
+    }
+
+    @Override
+    public int size() {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + CartDatabaseHelper.TABLE_OUTBOX, null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.fruitshop;
+
+/**
+ * Stock of one product as last read from its counter shards. Products without an inventory
+ * counter are untracked and never run out.
+ */
+public final class StockLevel {
+
+    private final String itemId;
+    private final int shardCount;
+    private final long available;
+    private final long fetchedAt;
+
+    StockLevel(String itemId, int shardCount, long available, long fetchedAt) {
+        this.itemId = itemId;
+        this.shardCount = shardCount;
+        this.available = available;
+        this.fetchedAt = fetchedAt;
+    }
+
+    static StockLevel untracked(String itemId, long fetchedAt) {
+        return new StockLevel(itemId, 0, Long.MAX_VALUE, fetchedAt);
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public boolean isTracked() {
+        return shardCount > 0;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public boolean canFulfil(long quantity) {
+        return available >= quantity;
+    }
+
+    boolean isFresh(long now, long maxAgeMs) {
+        return now - fetchedAt <= maxAgeMs;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.fruitshop;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.Arrays;
+
+/**
+ * Range updates between two lists of catalog positions, so new search and filter results only touch
+ * the rows that came or went. A null list stands for the whole catalog in order. Positions kept by
+ * both lists must stay in the same relative order, which holds unless the sort changed; when it did,
+ * or when the change is too scattered to be worth describing, the result is a full refresh.
+ */
+final class VisiblePositionsDiff {
+
+    static final int MAX_UPDATES = 64;
+
+    private static final VisiblePositionsDiff FULL_REFRESH = new VisiblePositionsDiff(null);
+
+    // Pairs of (adapter position, count); a positive count is an insertion, a negative one a removal.
+    private final int[] updates;
+
+    private VisiblePositionsDiff(int[] updates) {
+        this.updates = updates;
+    }
+
+    /** Must run off the main thread for large catalogs; it is linear in {@code catalogSize}. */
+    static VisiblePositionsDiff calculate(int[] oldPositions, int[] newPositions, int catalogSize) {
+        int oldSize = oldPositions == null ? catalogSize : oldPositions.length;
+        int newSize = newPositions == null ? catalogSize : newPositions.length;
+        int[] indexInNew = new int[catalogSize];
+        Arrays.fill(indexInNew, -1);
+        for (int j = 0; j < newSize; j++) {
+            indexInNew[at(newPositions, j)] = j;
+        }
+        int lastKept = -1;
+        for (int i = 0; i < oldSize; i++) {
+            int index = indexInNew[at(oldPositions, i)];
+            if (index >= 0) {
+                if (index < lastKept) {
+                    return FULL_REFRESH;
+                }
+                lastKept = index;
+            }
+        }
+
+        int[] updates = new int[MAX_UPDATES * 2];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldSize || j < newSize) {
+            if (i < oldSize && indexInNew[at(oldPositions, i)] < 0) {
+                int start = i;
+                while (i < oldSize && indexInNew[at(oldPositions, i)] < 0) {
+                    i++;
+                }
+                if (count == MAX_UPDATES) {
+                    return FULL_REFRESH;
+                }
+                updates[count * 2] = position;
+                updates[count * 2 + 1] = start - i;
+                count++;
+            } else if (i >= oldSize || at(oldPositions, i) != at(newPositions, j)) {
+                int start = j;
+                while (j < newSize && (i >= oldSize || at(oldPositions, i) != at(newPositions, j))) {
+                    j++;
+                }
+                if (count == MAX_UPDATES) {
+                    return FULL_REFRESH;
+                }
+                updates[count * 2] = position;
+                updates[count * 2 + 1] = j - start;
+                count++;
+                position += j - start;
+            } else {
+                i++;
+                j++;
+                position++;
+            }
+        }
+        return new VisiblePositionsDiff(Arrays.copyOf(updates, count * 2));
+    }
+
+    boolean isFullRefresh() {
+        return updates == null;
+    }
+
+    void dispatchUpdatesTo(ListUpdateCallback callback) {
+        for (int k = 0; k < updates.length; k += 2) {
+            if (updates[k + 1] > 0) {
+                callback.onInserted(updates[k], updates[k + 1]);
+            } else {
+                callback.onRemoved(updates[k], -updates[k + 1]);
+            }
+        }
+    }
+
+    private static int at(int[] positions, int index) {
+        return positions == null ? index : positions[index];
+    }
+}
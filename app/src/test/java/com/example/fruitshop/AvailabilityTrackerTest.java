@@ -0,0 +1,204 @@
+package com.example.fruitshop;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AvailabilityTrackerTest {
+
+    private static final int ROWS = 1_000;
+    private static final int SCREEN = 8;
+
+    private final long[] now = {0};
+    private FakeHost host;
+    private FakeFetcher fetcher;
+    private AvailabilityTracker tracker;
+
+    @Before
+    public void setUp() {
+        host = new FakeHost();
+        fetcher = new FakeFetcher();
+        tracker = new AvailabilityTracker(host, fetcher, () -> now[0]);
+    }
+
+    @Test
+    public void repeatedRanges_requestOnce() {
+        for (int i = 0; i < 50; i++) {
+            tracker.onVisibleRange(0, SCREEN - 1);
+        }
+
+        assertEquals(2, fetcher.requests.size());
+        for (FakeFetcher.Request request : fetcher.requests) {
+            assertTrue(request.itemIds.size() <= AvailabilityTracker.MAX_IDS_PER_QUERY);
+        }
+        assertEquals(SCREEN + AvailabilityTracker.FETCH_MARGIN, fetcher.requestedIds());
+    }
+
+    @Test
+    public void slowScroll_requestsScaleWithDistance() {
+        int distance = 500;
+        for (int first = 0; first <= distance; first++) {
+            tracker.onVisibleRange(first, first + SCREEN - 1);
+            fetcher.answerAll();
+        }
+
+        int rowsCovered = distance + SCREEN + AvailabilityTracker.FETCH_MARGIN;
+        assertTrue(fetcher.requestedIds() >= distance + SCREEN + AvailabilityTracker.NEED_MARGIN);
+        assertTrue(fetcher.requestedIds() <= rowsCovered);
+        assertEquals(fetcher.requestedIds(), fetcher.distinctIds().size());
+        assertTrue("requests: " + fetcher.requests.size(), fetcher.requests.size() <= rowsCovered / (AvailabilityTracker.FETCH_MARGIN - AvailabilityTracker.NEED_MARGIN) + 2);
+    }
+
+    @Test
+    public void farSubscriptions_areCancelled() {
+        tracker.onVisibleRange(0, SCREEN - 1);
+        fetcher.answerAll();
+        FakeFetcher.Request first = fetcher.requests.get(0);
+
+        for (int row = 0; row <= 300; row += 5) {
+            tracker.onVisibleRange(row, row + SCREEN - 1);
+            fetcher.answerAll();
+        }
+
+        assertTrue(first.cancelled);
+        assertTrue(tracker.getSubscriptionCount() <= (2 * AvailabilityTracker.DROP_DISTANCE + SCREEN) / AvailabilityTracker.MAX_IDS_PER_QUERY + 2);
+    }
+
+    @Test
+    public void cachedRows_areNotRequestedAgainUntilTheyExpire() {
+        tracker.onVisibleRange(0, SCREEN - 1);
+        fetcher.answerAll();
+        tracker.onVisibleRange(400, 400 + SCREEN - 1);
+        fetcher.answerAll();
+        int requests = fetcher.requests.size();
+
+        now[0] += AvailabilityTracker.TTL_MS / 2;
+        tracker.onVisibleRange(0, SCREEN - 1);
+        assertEquals(requests, fetcher.requests.size());
+        assertEquals(100, tracker.peek("item-0").getPrice().getCents());
+
+        tracker.onVisibleRange(400, 400 + SCREEN - 1);
+        now[0] += AvailabilityTracker.TTL_MS + 1;
+        tracker.onVisibleRange(0, SCREEN - 1);
+        assertTrue(fetcher.requests.size() > requests);
+    }
+
+    @Test
+    public void updates_notifyOnlyChangedRowsNearTheViewport() {
+        tracker.onVisibleRange(10, 10 + SCREEN - 1);
+        fetcher.answerAll();
+        host.changed.clear();
+
+        FakeFetcher.Request request = fetcher.requests.get(0);
+        List<Availability> update = new ArrayList<>();
+        for (String itemId : request.itemIds) {
+            update.add(availability(itemId, itemId.equals("item-12") ? 5 : 0));
+        }
+        request.callback.onAvailability(update);
+
+        assertEquals(1, host.changed.size());
+        assertEquals(Integer.valueOf(12), host.changed.get(0));
+        assertFalse(tracker.peek("item-12").isAvailable());
+    }
+
+    @Test
+    public void failedRows_backOffBeforeRetrying() {
+        tracker.onVisibleRange(0, SCREEN - 1);
+        for (FakeFetcher.Request request : new ArrayList<>(fetcher.requests)) {
+            request.callback.onError(new Exception("offline"));
+        }
+        int requests = fetcher.requests.size();
+
+        tracker.onVisibleRange(0, SCREEN - 1);
+        assertEquals(requests, fetcher.requests.size());
+        assertNull(tracker.peek("item-0"));
+
+        now[0] += AvailabilityTracker.ERROR_BACKOFF_MS;
+        tracker.onVisibleRange(0, SCREEN - 1);
+        assertTrue(fetcher.requests.size() > requests);
+    }
+
+    private static Availability availability(String itemId, long seed) {
+        return new Availability(itemId, 100 + seed, seed == 0 || seed % 5 != 0, 50);
+    }
+
+    private static class FakeHost implements AvailabilityTracker.Host {
+        final List<Integer> changed = new ArrayList<>();
+
+        @Override
+        public int getItemCount() {
+            return ROWS;
+        }
+
+        @Override
+        public String itemIdAt(int position) {
+            return "item-" + position;
+        }
+
+        @Override
+        public void onAvailabilityChanged(int position) {
+            changed.add(position);
+        }
+    }
+
+    private static class FakeFetcher implements AvailabilityTracker.Fetcher {
+        final List<Request> requests = new ArrayList<>();
+
+        @Override
+        public AvailabilityTracker.Subscription subscribe(List<String> itemIds, AvailabilityTracker.Callback callback) {
+            Request request = new Request(new ArrayList<>(itemIds), callback);
+            requests.add(request);
+            return () -> request.cancelled = true;
+        }
+
+        void answerAll() {
+            for (Request request : new ArrayList<>(requests)) {
+                if (!request.answered && !request.cancelled) {
+                    request.answered = true;
+                    List<Availability> results = new ArrayList<>();
+                    for (String itemId : request.itemIds) {
+                        results.add(availability(itemId, 0));
+                    }
+                    request.callback.onAvailability(results);
+                }
+            }
+        }
+
+        int requestedIds() {
+            int count = 0;
+            for (Request request : requests) {
+                count += request.itemIds.size();
+            }
+            return count;
+        }
+
+        Set<String> distinctIds() {
+            Set<String> ids = new HashSet<>();
+            for (Request request : requests) {
+                ids.addAll(request.itemIds);
+            }
+            return ids;
+        }
+
+        static class Request {
+            final List<String> itemIds;
+            final AvailabilityTracker.Callback callback;
+            boolean answered;
+            boolean cancelled;
+
+            Request(List<String> itemIds, AvailabilityTracker.Callback callback) {
+                this.itemIds = itemIds;
+                this.callback = callback;
+            }
+        }
+    }
+}
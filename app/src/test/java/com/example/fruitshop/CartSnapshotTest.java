@@ -0,0 +1,87 @@
+package com.example.fruitshop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CartSnapshotTest {
+
+    private static final String[] ITEM_IDS = {"apple", "banana", "broccoli", "cabbage", "carrot", "cherry", "chilli", "cucumber"};
+
+    @Test
+    public void incrementalUpdates_matchFullRebuild() {
+        for (long seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            Map<String, CartItem> model = new HashMap<>();
+            CartSnapshot snapshot = CartSnapshot.of("user", new ArrayList<>());
+
+            for (int step = 0; step < 300; step++) {
+                String itemId = ITEM_IDS[random.nextInt(ITEM_IDS.length)];
+                CartSnapshot previous = snapshot;
+                List<CartItem> previousItems = new ArrayList<>(previous.getItems());
+                if (random.nextInt(10) < 7) {
+                    CartItem item = new CartItem(itemId, itemId, Money.ofCents(random.nextInt(10_000)), 1 + random.nextInt(99));
+                    item.setTimestamp(random.nextInt(5) == 0 ? null : new Date(random.nextInt(20)));
+                    snapshot = snapshot.withItem(item);
+                    model.put(itemId, item);
+                } else {
+                    snapshot = snapshot.withoutItem(itemId);
+                    model.remove(itemId);
+                }
+                String message = "seed " + seed + " step " + step;
+                assertEquals(message, previousItems, previous.getItems());
+                assertMatches(message, CartSnapshot.of("user", new ArrayList<>(model.values())), snapshot);
+            }
+        }
+    }
+
+    @Test
+    public void largeCart_incrementalUpdatesMatchFullRebuild() {
+        Random random = new Random(42);
+        Map<String, CartItem> model = new HashMap<>();
+        CartSnapshot snapshot = CartSnapshot.EMPTY;
+        for (int step = 0; step < 3_000; step++) {
+            String itemId = "item" + random.nextInt(500);
+            if (random.nextInt(10) < 7) {
+                CartItem item = new CartItem(itemId, itemId, Money.ofCents(random.nextInt(10_000)), 1 + random.nextInt(99));
+                item.setTimestamp(new Date(random.nextInt(1_000)));
+                snapshot = snapshot.withItem(item);
+                model.put(itemId, item);
+            } else {
+                snapshot = snapshot.withoutItem(itemId);
+                model.remove(itemId);
+            }
+        }
+        assertMatches("large cart", CartSnapshot.of("user", new ArrayList<>(model.values())), snapshot);
+    }
+
+    @Test
+    public void unchangedLine_returnsSameSnapshot() {
+        CartItem apple = new CartItem("apple", "Apple", Money.ofCents(199), 2);
+        apple.setTimestamp(new Date(1));
+        CartSnapshot snapshot = CartSnapshot.of("user", Collections.singletonList(apple));
+
+        CartItem sameApple = new CartItem("apple", "Apple", Money.ofCents(199), 2);
+        sameApple.setTimestamp(new Date(1));
+        assertSame(snapshot, snapshot.withItem(sameApple));
+        assertSame(snapshot, snapshot.withoutItem("banana"));
+    }
+
+    private static void assertMatches(String message, CartSnapshot expected, CartSnapshot actual) {
+        assertEquals(message, expected.getItems(), actual.getItems());
+        assertEquals(message, expected.getSubtotalCents(), actual.getSubtotalCents());
+        assertEquals(message, expected.getUnitCount(), actual.getUnitCount());
+        for (CartItem item : expected.getItems()) {
+            assertSame(message, item, actual.findById(item.getItemId()));
+        }
+    }
+}
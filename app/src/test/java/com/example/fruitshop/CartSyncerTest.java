@@ -0,0 +1,453 @@
+package com.example.fruitshop;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CartSyncerTest {
+
+    private static final String USER = "user-1";
+
+    private InMemoryCartOutbox outbox;
+    private FakeCartBackend backend;
+    private List<Exception> failures;
+    private List<CartOperation> rejected;
+    private CartSyncer syncer;
+
+    @Before
+    public void setUp() {
+        outbox = new InMemoryCartOutbox();
+        backend = new FakeCartBackend();
+        failures = new ArrayList<>();
+        rejected = new ArrayList<>();
+        syncer = new CartSyncer(outbox, backend, Runnable::run, new CartSyncer.Listener() {
+            @Override
+            public void onOperationsSynced(List<CartOperation> operations) {
+            }
+
+            @Override
+            public void onSyncIdle() {
+            }
+
+            @Override
+            public void onSyncFailed(Exception e) {
+                failures.add(e);
+            }
+
+            @Override
+            public void onOperationsRejected(List<CartOperation> operations, Exception e) {
+                rejected.addAll(operations);
+            }
+        });
+    }
+
+    @Test
+    public void sync_appliesOperationsInOrderAndDrainsOutbox() {
+        outbox.enqueue(upsert("apple", 1));
+        outbox.enqueue(upsert("banana", 2));
+        outbox.enqueue(CartOperation.delete(USER, "apple"));
+
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertNull(backend.lines.get("apple"));
+        assertEquals(Long.valueOf(2), backend.lines.get("banana"));
+    }
+
+    @Test
+    public void sync_keepsOperationsQueuedWhenBackendFails() {
+        outbox.enqueue(upsert("apple", 3));
+
+        backend.failNext = true;
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(1, failures.size());
+        assertEquals(1, outbox.size());
+        assertTrue(backend.lines.isEmpty());
+
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertEquals(Long.valueOf(3), backend.lines.get("apple"));
+    }
+
+    @Test
+    public void sync_dropsRejectedBatchAndContinuesWithNextOne() {
+        outbox.enqueue(upsert("apple", 1));
+        backend.rejectNext = true;
+        syncer.sync();
+        outbox.enqueue(upsert("banana", 2));
+        backend.completeAll();
+
+        assertEquals(1, rejected.size());
+        assertEquals("apple", rejected.get(0).getItemId());
+        assertEquals(0, outbox.size());
+        assertNull(backend.lines.get("apple"));
+        assertEquals(Long.valueOf(2), backend.lines.get("banana"));
+    }
+
+    @Test
+    public void sync_replayingAppliedOperationsIsIdempotent() {
+        CartOperation operation = upsert("apple", 4);
+        backend.apply(List.of(operation), null);
+        backend.completeAll();
+
+        outbox.enqueue(operation);
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(Long.valueOf(4), backend.lines.get("apple"));
+        assertEquals(1, backend.appliedOpIds.size());
+    }
+
+    @Test
+    public void sync_retryAfterAmbiguousFailure_doesNotCountLinesTwice() {
+        outbox.enqueue(upsert("apple", 4));
+        outbox.enqueue(upsert("banana", 2));
+        backend.failAfterCommitNext = true;
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(1, failures.size());
+        assertEquals(2, outbox.size());
+
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertEquals(2, backend.summaryLineCount);
+        assertEquals(6, backend.summaryUnitCount);
+        assertEquals(600, backend.summarySubtotalCents);
+    }
+
+    @Test
+    public void sync_derivesSummaryFromStoredLinesWhenBaseIsStale() {
+        // Another device already took the line to 3; this one still thinks it is absent.
+        backend.apply(List.of(upsert("apple", 3)), null);
+        backend.completeAll();
+
+        outbox.enqueue(CartOperation.delete(USER, "apple"));
+        syncer.sync();
+        backend.completeAll();
+
+        assertTrue(backend.lines.isEmpty());
+        assertEquals(0, backend.summaryLineCount);
+        assertEquals(0, backend.summaryUnitCount);
+        assertEquals(0, backend.summarySubtotalCents);
+    }
+
+    @Test
+    public void sync_keepsAnAddMadeOnAnotherDevice() {
+        backend.apply(List.of(upsert("apple", 1)), null);
+        backend.completeAll();
+
+        // Both devices saw one apple and added one more.
+        backend.apply(List.of(upsert("apple", 2).withBase(1, 100)), null);
+        outbox.enqueue(upsert("apple", 2).withBase(1, 100));
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(Long.valueOf(3), backend.lines.get("apple"));
+        assertEquals(3, backend.summaryUnitCount);
+        assertEquals(300, backend.summarySubtotalCents);
+    }
+
+    @Test
+    public void enqueue_neverSupersedesAnOperationThatMayHaveBeenApplied() {
+        outbox.enqueue(upsert("apple", 1));
+        backend.failAfterCommitNext = true;
+        syncer.sync();
+        backend.completeAll();
+
+        outbox.enqueue(upsert("apple", 2).withBase(1, 100));
+        assertEquals(2, outbox.size());
+
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertEquals(Long.valueOf(2), backend.lines.get("apple"));
+        assertEquals(2, backend.summaryUnitCount);
+    }
+
+    @Test
+    public void sync_sendsOperationsEnqueuedWhileBatchInFlight() {
+        outbox.enqueue(upsert("apple", 1));
+        syncer.sync();
+        assertEquals(1, backend.pending.size());
+
+        outbox.enqueue(upsert("apple", 2).withBase(1, 100));
+        syncer.sync();
+        assertEquals(1, backend.pending.size());
+
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertEquals(Long.valueOf(2), backend.lines.get("apple"));
+        assertEquals(2, backend.commits);
+    }
+
+    @Test
+    public void pause_holdsOperationsUntilResumed() {
+        syncer.pause();
+        outbox.enqueue(upsert("apple", 1));
+        syncer.sync();
+
+        assertTrue(backend.pending.isEmpty());
+
+        syncer.resume();
+        backend.completeAll();
+
+        assertEquals(0, outbox.size());
+        assertEquals(Long.valueOf(1), backend.lines.get("apple"));
+    }
+
+    @Test
+    public void afterOrdered_keepsOnlyUnitsBeyondTheOrderOnAnEmptyLine() {
+        // An order took 2 apples and cleared the line and the summary; an edit to 5 was queued meanwhile.
+        CartOperation rebased = upsert("apple", 5).withBase(2, 100).afterOrdered(2);
+        outbox.enqueue(rebased);
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(Long.valueOf(3), backend.lines.get("apple"));
+        assertEquals(1, backend.summaryLineCount);
+        assertEquals(3, backend.summaryUnitCount);
+        assertEquals(300, backend.summarySubtotalCents);
+        assertNull(upsert("apple", 2).afterOrdered(2));
+        assertNull(CartOperation.delete(USER, "apple").afterOrdered(2));
+    }
+
+    @Test
+    public void enqueue_collapsesUnsentOperationsForSameLine() {
+        outbox.enqueue(upsert("apple", 1));
+        outbox.enqueue(upsert("apple", 2));
+        outbox.enqueue(upsert("apple", 3));
+
+        assertEquals(1, outbox.size());
+        assertFalse(outbox.hasPending(USER, "banana"));
+
+        syncer.sync();
+        backend.completeAll();
+
+        assertEquals(1, backend.commits);
+        assertEquals(Long.valueOf(3), backend.lines.get("apple"));
+    }
+
+    @Test
+    public void summaryDeltas_matchLinesAfterCollapsedAndInFlightOperations() {
+        String[] itemIds = {"apple", "banana", "cherry", "durian"};
+        for (long seed = 0; seed < 100; seed++) {
+            Random random = new Random(seed);
+            setUp();
+            Map<String, CartOperation> local = new HashMap<>();
+            for (int step = 0; step < 200; step++) {
+                String itemId = itemIds[random.nextInt(itemIds.length)];
+                CartOperation previous = local.get(itemId);
+                int action = random.nextInt(10);
+                if (action < 5) {
+                    CartOperation operation = CartOperation.upsert(USER, itemId, itemId, 1 + random.nextInt(500), 1 + random.nextInt(20), null, 1000L);
+                    outbox.enqueue(withBase(operation, previous));
+                    local.put(itemId, operation);
+                } else if (action < 7) {
+                    if (previous != null) {
+                        outbox.enqueue(withBase(CartOperation.delete(USER, itemId), previous));
+                        local.remove(itemId);
+                    }
+                } else if (action < 9) {
+                    syncer.sync();
+                } else {
+                    backend.completeAll();
+                }
+            }
+            syncer.sync();
+            backend.completeAll();
+
+            long units = 0;
+            long subtotal = 0;
+            for (Map.Entry<String, Long> line : backend.lines.entrySet()) {
+                units += line.getValue();
+                subtotal += line.getValue() * backend.prices.get(line.getKey());
+            }
+            assertEquals("seed " + seed, backend.lines.size(), backend.summaryLineCount);
+            assertEquals("seed " + seed, units, backend.summaryUnitCount);
+            assertEquals("seed " + seed, subtotal, backend.summarySubtotalCents);
+        }
+    }
+
+    private static CartOperation withBase(CartOperation operation, CartOperation previous) {
+        return previous == null ? operation : operation.withBase(previous.getQuantity(), previous.getItemPriceCents());
+    }
+
+    private static CartOperation upsert(String itemId, long quantity) {
+        return CartOperation.upsert(USER, itemId, itemId, 100, quantity, null, 1000L);
+    }
+
+    static class InMemoryCartOutbox implements CartOutbox {
+        private final List<CartOperation> operations = new ArrayList<>();
+        // Operations at the head that were ever peeked; like SqliteCartOutbox, they are never superseded.
+        private int sentCount;
+
+        @Override
+        public void enqueue(CartOperation operation) {
+            for (int i = operations.size() - 1; i >= sentCount; i--) {
+                CartOperation queued = operations.get(i);
+                if (queued.getUserId().equals(operation.getUserId()) && queued.getItemId().equals(operation.getItemId())) {
+                    operation = operation.withBase(queued.getBaseQuantity(), queued.getBasePriceCents());
+                    operations.remove(i);
+                }
+            }
+            operations.add(operation);
+        }
+
+        @Override
+        public void enqueueAll(List<CartOperation> operations) {
+            for (CartOperation operation : operations) {
+                enqueue(operation);
+            }
+        }
+
+        @Override
+        public List<CartOperation> peek(int maxCount) {
+            int count = Math.min(maxCount, operations.size());
+            sentCount = Math.max(sentCount, count);
+            return new ArrayList<>(operations.subList(0, count));
+        }
+
+        @Override
+        public void remove(List<CartOperation> removed) {
+            for (CartOperation operation : removed) {
+                int index = operations.indexOf(operation);
+                if (index >= 0) {
+                    operations.remove(index);
+                    if (index < sentCount) {
+                        sentCount--;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public boolean hasPending(String userId, String itemId) {
+            for (CartOperation operation : operations) {
+                if (operation.getUserId().equals(userId) && operation.getItemId().equals(itemId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public CartOperation findPending(String userId, String itemId) {
+            for (int i = operations.size() - 1; i >= 0; i--) {
+                CartOperation operation = operations.get(i);
+                if (operation.getUserId().equals(userId) && operation.getItemId().equals(itemId)) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return operations.size();
+        }
+    }
+
+    static class FakeCartBackend implements CartBackend {
+        final Map<String, Long> lines = new HashMap<>();
+        final Map<String, Long> prices = new HashMap<>();
+        final Map<String, String> lastOpIds = new HashMap<>();
+        long summaryLineCount;
+        long summaryUnitCount;
+        long summarySubtotalCents;
+        final Map<String, Boolean> appliedOpIds = new LinkedHashMap<>();
+        final List<Runnable> pending = new ArrayList<>();
+        boolean failNext;
+        boolean failAfterCommitNext;
+        boolean rejectNext;
+        int commits;
+
+        @Override
+        public void apply(List<CartOperation> operations, Callback callback) {
+            boolean fail = failNext;
+            boolean failAfterCommit = failAfterCommitNext;
+            boolean reject = rejectNext;
+            failNext = false;
+            failAfterCommitNext = false;
+            rejectNext = false;
+            pending.add(() -> {
+                if (fail) {
+                    callback.onFailure(new Exception("backend unavailable"));
+                    return;
+                }
+                if (reject) {
+                    callback.onRejected(new Exception("permission denied"));
+                    return;
+                }
+                commits++;
+                // Same reads and writes as FirestoreCartBackend's transaction, against the maps above.
+                CartLineMerge merge = new CartLineMerge();
+                for (CartOperation operation : operations) {
+                    String itemId = operation.getItemId();
+                    if (!merge.hasStored(USER, itemId)) {
+                        merge.putStored(USER, itemId, lines.containsKey(itemId) ? new CartLineMerge.Line(lines.get(itemId), prices.get(itemId), lastOpIds.get(itemId)) : null);
+                    }
+                }
+                for (CartOperation operation : operations) {
+                    String itemId = operation.getItemId();
+                    CartLineMerge.Line before = merge.get(USER, itemId);
+                    CartLineMerge.Line after = merge.apply(operation);
+                    if (after == before) {
+                        continue;
+                    }
+                    appliedOpIds.put(operation.getOpId(), true);
+                    if (after == null) {
+                        lines.remove(itemId);
+                        prices.remove(itemId);
+                        lastOpIds.remove(itemId);
+                    } else {
+                        lines.put(itemId, after.quantity);
+                        prices.put(itemId, after.priceCents);
+                        lastOpIds.put(itemId, after.lastOpId);
+                    }
+                }
+                long[] delta = merge.getSummaryDeltas().get(USER);
+                if (delta != null) {
+                    summaryLineCount += delta[0];
+                    summaryUnitCount += delta[1];
+                    summarySubtotalCents += delta[2];
+                }
+                if (failAfterCommit) {
+                    callback.onFailure(new Exception("deadline exceeded"));
+                } else if (callback != null) {
+                    callback.onSuccess();
+                }
+            });
+        }
+
+        void completeAll() {
+            while (!pending.isEmpty()) {
+                pending.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.fruitshop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class CatalogFilterTest {
+
+    private static final Item.Category[] CATEGORIES = Item.Category.values();
+    private static final CatalogFilter.Sort[] SORTS = CatalogFilter.Sort.values();
+
+    @Test
+    public void apply_matchesNaiveScan() {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            Catalog catalog = randomCatalog(random, 1 + random.nextInt(500));
+            CatalogFilter filter = catalog.buildFilter();
+            for (int run = 0; run < 20; run++) {
+                CatalogFilter.Query query = randomQuery(random);
+                assertArrayEquals("seed " + seed + " run " + run, catalog.naive(query, null), filter.apply(query, null));
+
+                int[] within = randomSubset(random, catalog.size());
+                assertArrayEquals("seed " + seed + " run " + run + " within", catalog.naive(query, within), filter.apply(query, within));
+            }
+        }
+    }
+
+    @Test
+    public void apply_matchesNaiveScanOnLargeCatalogs() {
+        for (int size : new int[]{10_000, 100_000}) {
+            Random random = new Random(size);
+            Catalog catalog = randomCatalog(random, size);
+            CatalogFilter filter = catalog.buildFilter();
+            for (CatalogFilter.Sort sort : SORTS) {
+                CatalogFilter.Query query = new CatalogFilter.Query(EnumSet.of(Item.Category.FRUIT), 150, 600, true, sort);
+                assertArrayEquals(size + " items " + sort, catalog.naive(query, null), filter.apply(query, null));
+            }
+        }
+    }
+
+    private static Catalog randomCatalog(Random random, int size) {
+        Catalog catalog = new Catalog(size);
+        for (int i = 0; i < size; i++) {
+            catalog.prices[i] = random.nextInt(1_000);
+            catalog.names[i] = "Item " + random.nextInt(size);
+            catalog.categories[i] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            catalog.available[i] = random.nextInt(4) != 0;
+        }
+        return catalog;
+    }
+
+    private static CatalogFilter.Query randomQuery(Random random) {
+        Set<Item.Category> categories = EnumSet.noneOf(Item.Category.class);
+        for (Item.Category category : CATEGORIES) {
+            if (random.nextBoolean()) {
+                categories.add(category);
+            }
+        }
+        long min = random.nextBoolean() ? 0 : random.nextInt(1_000);
+        long max = random.nextBoolean() ? Long.MAX_VALUE : min + random.nextInt(1_000);
+        return new CatalogFilter.Query(categories, min, max, random.nextBoolean(), SORTS[random.nextInt(SORTS.length)]);
+    }
+
+    private static int[] randomSubset(Random random, int size) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(3) == 0) {
+                positions.add(i);
+            }
+        }
+        Collections.shuffle(positions, random);
+        int[] subset = new int[positions.size()];
+        for (int i = 0; i < subset.length; i++) {
+            subset[i] = positions.get(i);
+        }
+        return subset;
+    }
+
+    private static class Catalog {
+        final long[] prices;
+        final String[] names;
+        final Item.Category[] categories;
+        final boolean[] available;
+
+        Catalog(int size) {
+            prices = new long[size];
+            names = new String[size];
+            categories = new Item.Category[size];
+            available = new boolean[size];
+        }
+
+        int size() {
+            return prices.length;
+        }
+
+        CatalogFilter buildFilter() {
+            return CatalogFilter.build(prices, names, categories, available);
+        }
+
+        int[] naive(CatalogFilter.Query query, int[] within) {
+            List<Integer> matches = new ArrayList<>();
+            if (within == null) {
+                for (int i = 0; i < size(); i++) {
+                    matches.add(i);
+                }
+            } else {
+                for (int position : within) {
+                    matches.add(position);
+                }
+            }
+            matches.removeIf(p -> (!query.getCategories().isEmpty() && !query.getCategories().contains(categories[p]))
+                    || (query.isAvailableOnly() && !available[p])
+                    || prices[p] < query.getMinPriceCents() || prices[p] > query.getMaxPriceCents());
+
+            Comparator<Integer> byPosition = Integer::compare;
+            switch (query.getSort()) {
+                case PRICE_LOW_TO_HIGH:
+                    matches.sort(Comparator.<Integer>comparingLong(p -> prices[p]).thenComparing(byPosition));
+                    break;
+                case PRICE_HIGH_TO_LOW:
+                    matches.sort(Comparator.<Integer>comparingLong(p -> -prices[p]).thenComparing(byPosition.reversed()));
+                    break;
+                case NAME:
+                    matches.sort(Comparator.<Integer, String>comparing(p -> names[p], String.CASE_INSENSITIVE_ORDER).thenComparing(byPosition));
+                    break;
+                default:
+                    if (within == null) {
+                        Collections.sort(matches);
+                    }
+                    break;
+            }
+            int[] result = new int[matches.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = matches.get(i);
+            }
+            return result;
+        }
+    }
+}
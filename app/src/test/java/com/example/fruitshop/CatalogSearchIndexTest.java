@@ -0,0 +1,89 @@
+package com.example.fruitshop;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogSearchIndexTest {
+
+    private static final String[] DESCRIPTIONS = {
+            "Fresh Red Apple",
+            "Ripe Yellow Banana",
+            "Sweet Yellow Pineapple",
+            "Crunchy Orange Carrot",
+            "Juicy Orange",
+    };
+    private static final String[] DETAILS = {
+            "Crisp and sweet apple, perfect for snacks.",
+            "Soft and delicious banana, rich in potassium.",
+            "Sweet and juicy pineapple, perfect for a tropical treat.",
+            "Crunchy and sweet carrots, rich in vitamins.",
+            "Sweet and sour orange.",
+    };
+
+    private final CatalogSearchIndex index = CatalogSearchIndex.build(DESCRIPTIONS, DETAILS);
+
+    @Test
+    public void search_matchesPrefixesAndRanksDescriptionFirst() {
+        assertArrayEquals(new int[]{1}, index.search("ban"));
+        assertArrayEquals(new int[]{3, 4}, index.search("orange"));
+        assertArrayEquals(new int[]{2, 0, 3, 4}, index.search("sweet"));
+    }
+
+    @Test
+    public void search_requiresEveryTerm() {
+        assertArrayEquals(new int[]{2}, index.search("sweet pine"));
+        assertArrayEquals(new int[]{4}, index.search("juicy ORANGE"));
+        assertEquals(0, index.search("red banana").length);
+        assertEquals(0, index.search("   ").length);
+    }
+
+    @Test
+    public void search_toleratesOneTypo() {
+        assertArrayEquals(new int[]{1}, index.search("bananna"));
+        assertArrayEquals(new int[]{0}, index.search("appel"));
+        assertArrayEquals(new int[]{3}, index.search("carot"));
+        assertArrayEquals(new int[]{1}, index.search("potasium"));
+        assertEquals(0, index.search("bnanaa").length);
+    }
+
+    @Test
+    public void withinOneEdit_coversSingleEdits() {
+        assertTrue(CatalogSearchIndex.withinOneEdit("apple", "apple"));
+        assertTrue(CatalogSearchIndex.withinOneEdit("aple", "apple"));
+        assertTrue(CatalogSearchIndex.withinOneEdit("applee", "apple"));
+        assertTrue(CatalogSearchIndex.withinOneEdit("appla", "apple"));
+        assertTrue(CatalogSearchIndex.withinOneEdit("paple", "apple"));
+        assertTrue(CatalogSearchIndex.withinOneEdit("aplpe", "apple"));
+        assertFalse(CatalogSearchIndex.withinOneEdit("palpe", "apple"));
+        assertFalse(CatalogSearchIndex.withinOneEdit("ppl", "apple"));
+    }
+
+    @Test
+    public void search_over100kItems_findsExactAndFuzzyMatches() {
+        String[] words = {"fresh", "red", "green", "yellow", "sweet", "juicy", "crisp", "apple", "banana", "carrot", "cherry",
+                "melon", "tomato", "potato", "organic", "local", "ripe", "crunchy", "spicy", "tropical"};
+        int size = 100_000;
+        Random random = new Random(42);
+        String[] descriptions = new String[size];
+        String[] details = new String[size];
+        for (int i = 0; i < size; i++) {
+            descriptions[i] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " sku" + i;
+            details[i] = words[random.nextInt(words.length)] + " and " + words[random.nextInt(words.length)];
+        }
+        CatalogSearchIndex large = CatalogSearchIndex.build(descriptions, details);
+
+        assertEquals(4242, large.search("sku4242")[0]);
+        assertEquals(12345, large.search("sku12345")[0]);
+        int[] fuzzy = large.search("tomatoe sku5");
+        assertTrue(fuzzy.length > 0);
+        for (int position : fuzzy) {
+            assertTrue(descriptions[position] + " / " + details[position], (descriptions[position] + " " + details[position]).contains("tomato"));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.fruitshop;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CheckoutValidatorTest {
+
+    @Test
+    public void revalidate_returnsNullWhenCatalogMatches() {
+        List<CartItem> lines = Arrays.asList(line("apple", 120, 2), line("pear", 90, 1));
+        Map<String, Item> catalog = new HashMap<>();
+        catalog.put("apple", item("apple", 120, true));
+        catalog.put("pear", item("pear", 90, true));
+
+        assertNull(CheckoutValidator.revalidate(lines, catalog, new HashMap<>()));
+    }
+
+    @Test
+    public void revalidate_keepsLinesWithoutCatalogDocument() {
+        assertNull(CheckoutValidator.revalidate(Collections.singletonList(line("apple", 120, 2)), new HashMap<>(), new HashMap<>()));
+    }
+
+    @Test
+    public void revalidate_reportsRepricedAndUnavailableLines() {
+        List<CartItem> lines = Arrays.asList(line("apple", 120, 2), line("pear", 90, 1), line("kiwi", 50, 3), line("plum", 70, 1));
+        Map<String, Item> catalog = new HashMap<>();
+        catalog.put("apple", item("apple", 150, true));
+        catalog.put("pear", item("pear", 90, false));
+        catalog.put("kiwi", null);
+        catalog.put("plum", item("plum", 70, true));
+
+        CheckoutResult result = CheckoutValidator.revalidate(lines, catalog, new HashMap<>());
+
+        assertEquals(CheckoutResult.Status.ITEMS_CHANGED, result.getStatus());
+        assertEquals(1, result.getPriceChanges().size());
+        PriceChange change = result.getPriceChanges().get(0);
+        assertEquals("apple", change.getItemId());
+        assertEquals(Money.ofCents(120), change.getOldPrice());
+        assertEquals(Money.ofCents(150), change.getNewPrice());
+        assertEquals(Arrays.asList("pear", "kiwi"), result.getUnavailableItemIds());
+    }
+
+    @Test
+    public void revalidate_reportsLinesWithoutEnoughStock() {
+        List<CartItem> lines = Arrays.asList(line("apple", 120, 2), line("pear", 90, 5), line("kiwi", 50, 3));
+        Map<String, StockLevel> stock = new HashMap<>();
+        stock.put("apple", new StockLevel("apple", 10, 2, 0));
+        stock.put("pear", new StockLevel("pear", 10, 4, 0));
+
+        CheckoutResult result = CheckoutValidator.revalidate(lines, new HashMap<>(), stock);
+
+        assertEquals(CheckoutResult.Status.ITEMS_CHANGED, result.getStatus());
+        assertTrue(result.getPriceChanges().isEmpty());
+        assertEquals(Collections.singletonList("pear"), result.getUnavailableItemIds());
+    }
+
+    @Test
+    public void matchesSummary_comparesCountsAndSubtotal() {
+        List<CartItem> lines = Arrays.asList(line("apple", 120, 2), line("pear", 90, 1));
+
+        assertTrue(CheckoutValidator.matchesSummary(2, 3, 330, lines));
+        assertFalse(CheckoutValidator.matchesSummary(1, 3, 330, lines));
+        assertFalse(CheckoutValidator.matchesSummary(2, 4, 330, lines));
+        assertFalse(CheckoutValidator.matchesSummary(2, 3, 329, lines));
+        assertFalse(CheckoutValidator.matchesSummary(0, 0, 0, lines));
+    }
+
+    @Test
+    public void sameLines_requiresTheExactSetOfLines() {
+        List<CartItem> lines = Arrays.asList(line("apple", 120, 2), line("pear", 90, 1));
+
+        assertTrue(CheckoutValidator.sameLines(lines, Arrays.asList(line("pear", 90, 1), line("apple", 120, 2))));
+        assertFalse(CheckoutValidator.sameLines(lines, Arrays.asList(line("apple", 120, 2), line("pear", 90, 1), line("kiwi", 50, 1))));
+        assertFalse(CheckoutValidator.sameLines(lines, Collections.singletonList(line("apple", 120, 2))));
+        assertFalse(CheckoutValidator.sameLines(lines, Arrays.asList(line("apple", 120, 3), line("pear", 90, 1))));
+        assertFalse(CheckoutValidator.sameLines(lines, Arrays.asList(line("apple", 120, 2), line("kiwi", 90, 1))));
+    }
+
+    private static CartItem line(String itemId, long priceCents, long quantity) {
+        return new CartItem(itemId, itemId, Money.ofCents(priceCents), quantity);
+    }
+
+    private static Item item(String itemId, long priceCents, boolean available) {
+        return new Item(itemId, 0, itemId, Money.ofCents(priceCents), "", Item.Category.FRUIT, available);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.fruitshop;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MoneyTest {
+
+    @Test
+    public void parse_readsCatalogPriceStrings() {
+        assertEquals(199, Money.parse("$1.99", Locale.US).getCents());
+        assertEquals(49, Money.parse("$0.49", Locale.US).getCents());
+        assertEquals(1000, Money.parse("10", Locale.US).getCents());
+        assertEquals(5, Money.parse("$0.045", Locale.US).getCents());
+    }
+
+    @Test
+    public void parse_readsGroupingAndDecimalSeparatorsOfTheLocale() {
+        assertEquals(123_450, Money.parse("$1,234.50", Locale.US).getCents());
+        assertEquals(123_450, Money.parse("1,234.5", Locale.US).getCents());
+        assertEquals(123_450, Money.parse("1.234,50", Locale.GERMANY).getCents());
+        assertEquals(199, Money.parse("1,99", Locale.GERMANY).getCents());
+    }
+
+    @Test
+    public void parse_readsWhatFormatWrites() {
+        for (Locale locale : new Locale[]{Locale.US, Locale.GERMANY, Locale.FRANCE}) {
+            Money amount = Money.ofCents(123_456);
+            assertEquals(locale.toString(), amount, Money.parse(amount.format(locale), locale));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsTextWithoutAmount() {
+        Money.parse("free", Locale.US);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsTrailingGarbage() {
+        Money.parse("12abc", Locale.US);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsEmptyText() {
+        Money.parse(" ", Locale.US);
+    }
+
+    @Test
+    public void fromDouble_roundsBinaryFractions() {
+        assertEquals(199, Money.fromDouble(1.99).getCents());
+        assertEquals(29, Money.fromDouble(0.29).getCents());
+        assertEquals(1005, Money.fromDouble(10.05).getCents());
+    }
+
+    @Test
+    public void arithmetic_staysInWholeCents() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < 1000; i++) {
+            total = total.plus(Money.ofCents(10));
+        }
+        assertEquals(Money.ofCents(10_000), total);
+        assertEquals(Money.ofCents(597), Money.ofCents(199).times(3));
+        assertSame(Money.ZERO, Money.ofCents(0));
+    }
+
+    @Test
+    public void format_usesLocaleConventions() {
+        assertEquals("$1.99", Money.ofCents(199).format(Locale.US));
+        assertEquals("$1,234.50", Money.ofCents(123_450).format(Locale.US));
+    }
+}
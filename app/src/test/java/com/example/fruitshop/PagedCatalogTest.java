@@ -0,0 +1,136 @@
+package com.example.fruitshop;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PagedCatalogTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_PAGES = 4;
+
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+    private final List<Integer> loadedStarts = new ArrayList<>();
+    private CountingSource source;
+
+    @Before
+    public void setUp() {
+        pendingLoads.clear();
+        loadedStarts.clear();
+        source = new CountingSource(1_000_000);
+    }
+
+    @Test
+    public void get_returnsPlaceholderUntilPageArrives() {
+        PagedCatalog catalog = newCatalog();
+
+        assertEquals(1_000_000, catalog.size());
+        assertEquals(0, source.itemsLoaded);
+        assertNull(catalog.get(3));
+
+        runPendingLoads();
+
+        assertNotNull(catalog.get(3));
+        assertEquals("item-3", catalog.get(3).getItemId());
+        assertTrue(loadedStarts.contains(0));
+    }
+
+    @Test
+    public void scrolling_keepsWindowBounded() {
+        PagedCatalog catalog = newCatalog();
+
+        for (int position = 0; position < 100_000; position += 3) {
+            catalog.get(position);
+            runPendingLoads();
+            assertNotNull(catalog.get(position));
+            assertTrue(catalog.getLoadedPageCount() <= MAX_PAGES);
+        }
+        assertTrue(source.itemsLoaded < 100_000 * 2);
+    }
+
+    @Test
+    public void pagesThatScrolledOutOfRangeAreDropped() {
+        PagedCatalog catalog = newCatalog();
+
+        catalog.get(0);
+        catalog.get(50_000);
+        runPendingLoads();
+
+        assertFalse(loadedStarts.contains(0));
+        assertNotNull(catalog.get(50_000));
+        assertEquals(2, catalog.getLoadedPageCount());
+    }
+
+    @Test
+    public void peek_neverLoadsOrMovesTheWindow() {
+        PagedCatalog catalog = newCatalog();
+        catalog.get(0);
+        runPendingLoads();
+        int loads = loadedStarts.size();
+
+        assertEquals("item-3", catalog.peek(3).getItemId());
+        for (int position = 0; position < 1_000; position++) {
+            catalog.peek(position);
+        }
+        runPendingLoads();
+
+        assertEquals(loads, loadedStarts.size());
+        assertNull(catalog.peek(500));
+        assertNotNull(catalog.peek(3));
+    }
+
+    private PagedCatalog newCatalog() {
+        return new PagedCatalog(source, pendingLoads::add, Runnable::run, new PagedCatalog.Listener() {
+            @Override
+            public void onPageLoaded(int start, int count) {
+                loadedStarts.add(start);
+            }
+
+            @Override
+            public void onPageFailed(int start, int count, Exception e) {
+                throw new AssertionError(e);
+            }
+        }, PAGE_SIZE, MAX_PAGES);
+    }
+
+    private void runPendingLoads() {
+        Runnable load;
+        while ((load = pendingLoads.poll()) != null) {
+            load.run();
+        }
+    }
+
+    private static class CountingSource implements CatalogSource {
+        private final int size;
+        int itemsLoaded;
+
+        CountingSource(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public List<Item> loadPage(int start, int count) {
+            List<Item> page = new ArrayList<>();
+            for (int i = start; i < start + count; i++) {
+                page.add(new Item("item-" + i, 0, "Item " + i, Money.ofCents(i), ""));
+            }
+            itemsLoaded += count;
+            return page;
+        }
+    }
+}
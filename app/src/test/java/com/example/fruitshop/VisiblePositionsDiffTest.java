@@ -0,0 +1,128 @@
+package com.example.fruitshop;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VisiblePositionsDiffTest {
+
+    @Test
+    public void narrowingAndWideningASearch_touchesOnlyChangedRanges() {
+        int[] apples = {3, 4, 5, 40, 41};
+        int[] appl = {3, 4, 5, 20, 40, 41, 90};
+
+        VisiblePositionsDiff narrow = VisiblePositionsDiff.calculate(null, apples, 100);
+        VisiblePositionsDiff widen = VisiblePositionsDiff.calculate(apples, appl, 100);
+
+        assertFalse(narrow.isFullRefresh());
+        assertEquals(3, replay(null, apples, narrow, 100).updates);
+        assertFalse(widen.isFullRefresh());
+        assertEquals(2, replay(apples, appl, widen, 100).updates);
+        assertEquals(0, replay(apples, apples, VisiblePositionsDiff.calculate(apples, apples, 100), 100).updates);
+    }
+
+    @Test
+    public void reorderedPositions_needAFullRefresh() {
+        assertTrue(VisiblePositionsDiff.calculate(new int[]{1, 2, 3}, new int[]{3, 2, 1}, 10).isFullRefresh());
+    }
+
+    @Test
+    public void scatteredChanges_needAFullRefresh() {
+        int[] everyOther = new int[VisiblePositionsDiff.MAX_UPDATES * 2];
+        for (int i = 0; i < everyOther.length; i++) {
+            everyOther[i] = i * 2;
+        }
+
+        assertTrue(VisiblePositionsDiff.calculate(null, everyOther, everyOther.length * 2).isFullRefresh());
+    }
+
+    @Test
+    public void randomOrderedSubsets_replayToTheNewPositions() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int catalogSize = 1 + random.nextInt(200);
+            int[] oldPositions = random.nextInt(5) == 0 ? null : subset(random, catalogSize);
+            int[] newPositions = random.nextInt(5) == 0 ? null : subset(random, catalogSize);
+            VisiblePositionsDiff diff = VisiblePositionsDiff.calculate(oldPositions, newPositions, catalogSize);
+            if (!diff.isFullRefresh()) {
+                replay(oldPositions, newPositions, diff, catalogSize);
+            }
+        }
+    }
+
+    private static int[] subset(Random random, int catalogSize) {
+        List<Integer> picked = new ArrayList<>();
+        int density = 1 + random.nextInt(10);
+        for (int position = 0; position < catalogSize; position++) {
+            if (random.nextInt(density) == 0) {
+                picked.add(position);
+            }
+        }
+        int[] positions = new int[picked.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = picked.get(i);
+        }
+        return positions;
+    }
+
+    private static Replay replay(int[] oldPositions, int[] newPositions, VisiblePositionsDiff diff, int catalogSize) {
+        Replay replay = new Replay(toList(oldPositions, catalogSize), toList(newPositions, catalogSize));
+        diff.dispatchUpdatesTo(replay);
+        assertEquals(replay.expected, replay.rows);
+        return replay;
+    }
+
+    private static List<Integer> toList(int[] positions, int catalogSize) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < (positions == null ? catalogSize : positions.length); i++) {
+            list.add(positions == null ? i : positions[i]);
+        }
+        return list;
+    }
+
+    // Applies the updates to the old rows the way the adapter sees them, filling insertions from the new rows.
+    private static class Replay implements ListUpdateCallback {
+        final List<Integer> rows;
+        final List<Integer> expected;
+        int updates;
+
+        Replay(List<Integer> rows, List<Integer> expected) {
+            this.rows = rows;
+            this.expected = expected;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            updates++;
+            for (int i = 0; i < count; i++) {
+                rows.add(position + i, expected.get(position + i));
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            updates++;
+            for (int i = 0; i < count; i++) {
+                rows.remove(position);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            throw new AssertionError("moves are never dispatched");
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            throw new AssertionError("changes are never dispatched");
+        }
+    }
+}